@@ -0,0 +1,94 @@
+package com.ecommerce.sb_ecom.config;
+
+import com.ecommerce.sb_ecom.payload.APIResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// admission limiter for the virtual thread profile: every /api request holds a permit while it runs,
+// with as many permits as the pool has connections. thousands of virtual threads then queue here (fair, bounded wait)
+// instead of piling up inside hikari and postgres, and a request that cannot get in answers 503 + Retry-After
+// runs before spring security, the token filter may already need a connection for the user lookup
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+@ConditionalOnProperty(name = "project.admission.enabled", havingValue = "true")
+public class DbAdmissionFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long timeoutMs;
+    private final ObjectMapper objectMapper;
+    private final Counter rejected;
+    private final Timer waits;
+
+    public DbAdmissionFilter(ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${project.admission.permits}") int permits,
+                             @Value("${project.admission.timeoutMs}") long timeoutMs) {
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(permits, true);
+        this.timeoutMs = timeoutMs;
+        Gauge.builder("db.admission.available", this.permits, Semaphore::availablePermits)
+                .description("Free admission permits (one per pooled connection)")
+                .register(meterRegistry);
+        Gauge.builder("db.admission.queued", this.permits, Semaphore::getQueueLength)
+                .description("Requests waiting for an admission permit")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("db.admission.rejected")
+                .description("Requests answered 503 because no permit was free within the timeout")
+                .register(meterRegistry);
+        this.waits = Timer.builder("db.admission.wait")
+                .description("Time spent waiting for an admission permit")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean admitted;
+        try {
+            admitted = permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (!admitted) {
+            rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), new APIResponse("Server is busy, retry later", false));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ecommerce.sb_ecom.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.BaseSessionEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// times the JDBC execution of every statement of a hibernate session; a slow one is counted and logged with its SQL,
+// the log is sampled: at most slowLogsPerMinute lines a minute, so a slow database does not also flood the logs
+// hibernate instantiates this per session, the settings come from SqlStatementMetrics through configure()
+public class SlowStatementListener extends BaseSessionEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowStatementListener.class);
+
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static volatile long thresholdNanos = Long.MAX_VALUE;
+    private static volatile int logsPerWindow;
+    private static volatile Timer executions;
+    private static volatile Counter slowStatements;
+
+    private static final AtomicLong windowStart = new AtomicLong();
+    private static final AtomicInteger loggedInWindow = new AtomicInteger();
+
+    private long start;
+
+    static void configure(long thresholdMs, int logsPerMinute, Timer executionTimer, Counter slowCounter) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        logsPerWindow = logsPerMinute;
+        executions = executionTimer;
+        slowStatements = slowCounter;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        long elapsed = System.nanoTime() - start;
+        Timer timer = executions;
+        if (timer != null) {
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+        if (elapsed < thresholdNanos) {
+            return;
+        }
+        Counter counter = slowStatements;
+        if (counter != null) {
+            counter.increment();
+        }
+        if (sampled()) {
+            logger.warn("Slow SQL ({} ms): {}", TimeUnit.NANOSECONDS.toMillis(elapsed), SqlStatementMetrics.lastSql());
+        }
+    }
+
+    private static boolean sampled() {
+        long now = System.currentTimeMillis();
+        long window = windowStart.get();
+        if (now - window >= WINDOW_MILLIS && windowStart.compareAndSet(window, now)) {
+            loggedInWindow.set(0);
+        }
+        return loggedInWindow.incrementAndGet() <= logsPerWindow;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ecommerce.sb_ecom.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// replaces show-sql: hibernate passes every statement it prepares through here (StatementInspector), which counts them
+// per thread for StatementCountFilter and keeps the last one for SlowStatementListener (timing and the slow query log)
+// JdbcTemplate statements (cart write-behind flush, the /stream exports) do not go through hibernate and are not seen
+@Component
+public class SqlStatementMetrics implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<ThreadStatements> CURRENT = ThreadLocal.withInitial(ThreadStatements::new);
+
+    public SqlStatementMetrics(MeterRegistry meterRegistry,
+                               @Value("${project.sql.slowThresholdMs}") long slowThresholdMs,
+                               @Value("${project.sql.slowLogsPerMinute}") int slowLogsPerMinute) {
+        SlowStatementListener.configure(slowThresholdMs, slowLogsPerMinute,
+                Timer.builder("sql.statement.execution")
+                        .description("JDBC execution time of the statements hibernate runs")
+                        .register(meterRegistry),
+                Counter.builder("sql.statements.slow")
+                        .description("Statements slower than project.sql.slowThresholdMs (all of them, the log is sampled)")
+                        .register(meterRegistry));
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+        // hibernate creates one listener per session from the class name
+        hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SlowStatementListener.class.getName());
+    }
+
+    @Override
+    public String inspect(String sql) {
+        ThreadStatements statements = CURRENT.get();
+        statements.count++;
+        statements.lastSql = sql;
+        return sql;
+    }
+
+    // statements prepared on this thread since the last reset
+    public static long count() {
+        return CURRENT.get().count;
+    }
+
+    public static void reset() {
+        ThreadStatements statements = CURRENT.get();
+        statements.count = 0;
+        statements.lastSql = null;
+    }
+
+    static String lastSql() {
+        return CURRENT.get().lastSql;
+    }
+
+    private static final class ThreadStatements {
+        private long count;
+        private String lastSql;
+    }
+}
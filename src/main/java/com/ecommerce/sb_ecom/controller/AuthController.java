@@ -6,11 +6,15 @@ import com.ecommerce.sb_ecom.model.User;
 import com.ecommerce.sb_ecom.repository.RoleRepository;
 import com.ecommerce.sb_ecom.repository.UserRepository;
 import com.ecommerce.sb_ecom.security.jwt.JwtUtils;
+import com.ecommerce.sb_ecom.security.jwt.TokenRevocationList;
 import com.ecommerce.sb_ecom.security.request.LoginRequest;
 import com.ecommerce.sb_ecom.security.request.SignupRequest;
 import com.ecommerce.sb_ecom.security.response.LoginResponse;
 import com.ecommerce.sb_ecom.security.response.MessageResponse;
+import com.ecommerce.sb_ecom.security.services.PrincipalCache;
 import com.ecommerce.sb_ecom.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -45,6 +49,12 @@ public class AuthController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
     @PostMapping("/signin")
     public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest) {
         Authentication authentication;
@@ -151,7 +161,16 @@ public class AuthController {
     }
 
     @PostMapping("/signout")
-    public ResponseEntity<MessageResponse> signoutUser() {
+    public ResponseEntity<MessageResponse> signoutUser(Authentication authentication, HttpServletRequest request) {
+        if(authentication != null) {
+            principalCache.evict(authentication.getName());
+        }
+        // the token itself stays valid until it expires, so it has to be revoked as well
+        String jwt = jwtUtils.getJwtFromCookies(request);
+        Claims claims = jwt == null ? null : jwtUtils.parseJwtClaims(jwt);
+        if(claims != null) {
+            tokenRevocationList.revoke(claims.getId(), claims.getExpiration());
+        }
         ResponseCookie cookie = jwtUtils.getCleanJwtCookie();
         return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, cookie.toString())
                 .body(new MessageResponse("You've been signed out!"));
@@ -1,16 +1,20 @@
 package com.ecommerce.sb_ecom.controller;
 
+import com.ecommerce.sb_ecom.config.AppConstants;
 import com.ecommerce.sb_ecom.model.Cart;
 import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.CartResponse;
 import com.ecommerce.sb_ecom.repository.CartRepository;
 import com.ecommerce.sb_ecom.service.CartService;
 import com.ecommerce.sb_ecom.util.AuthUtil;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/api")
@@ -32,9 +36,21 @@ public class CartController {
     }
 
     @GetMapping("/carts")
-    public ResponseEntity<List<CartDTO>> getCarts() {
-        List<CartDTO> cartDTOS = cartService.getAllCarts();
-        return new ResponseEntity<>(cartDTOS, HttpStatus.FOUND);
+    public ResponseEntity<CartResponse> getCarts(
+            @RequestParam(name = "pageNumber", defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
+            @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_BY, required = false) String sortBy,
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder
+    ) {
+        CartResponse cartResponse = cartService.getAllCarts(pageNumber, pageSize, sortBy, sortOrder);
+        return new ResponseEntity<>(cartResponse, HttpStatus.FOUND);
+    }
+
+    // all carts in one response, written row by row as they are read (constant memory)
+    @GetMapping(value = "/carts/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamCarts(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        cartService.streamAllCarts(response.getOutputStream());
     }
 
     @GetMapping("/carts/users/cart")
@@ -1,15 +1,19 @@
 package com.ecommerce.sb_ecom.controller;
 
-import com.ecommerce.sb_ecom.payload.CartItemDTO;
+import com.ecommerce.sb_ecom.config.AppConstants;
+import com.ecommerce.sb_ecom.payload.CartItemResponse;
 import com.ecommerce.sb_ecom.service.CartItemService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
+import java.io.IOException;
 
 // just a dummy controller to test deletion by hibernate
 @RestController
@@ -20,8 +24,20 @@ public class CartItemController {
     private CartItemService cartItemService;
 
     @GetMapping("/cart-items")
-    public ResponseEntity<List<CartItemDTO>> getCartItems() {
-        List<CartItemDTO> cartItemDTOS = cartItemService.getAllCartItems();
-        return new ResponseEntity<>(cartItemDTOS, HttpStatus.FOUND);
+    public ResponseEntity<CartItemResponse> getCartItems(
+            @RequestParam(name = "pageNumber", defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
+            @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_BY, required = false) String sortBy,
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder
+    ) {
+        CartItemResponse cartItemResponse = cartItemService.getAllCartItems(pageNumber, pageSize, sortBy, sortOrder);
+        return new ResponseEntity<>(cartItemResponse, HttpStatus.FOUND);
+    }
+
+    // all cart items in one response, written row by row as they are read (constant memory)
+    @GetMapping(value = "/cart-items/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamCartItems(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        cartItemService.streamAllCartItems(response.getOutputStream());
     }
 }
@@ -30,6 +30,17 @@ public class CategoryController {
         return new ResponseEntity<>(categoryService.getAllCategories(pageNumber, pageSize, sortBy, sortOrder), HttpStatus.OK);
     }
 
+    // keyset pagination, no OFFSET and no total count -> pass back nextCursor to get the following page
+    @GetMapping("/public/categories/cursor")
+    public ResponseEntity<CategoryResponse> getAllCategoriesByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
+            @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_BY, required = false) String sortBy,
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder
+    ) {
+        return new ResponseEntity<>(categoryService.getAllCategoriesByCursor(cursor, pageSize, sortBy, sortOrder), HttpStatus.OK);
+    }
+
     @PostMapping("/public/categories")
     public ResponseEntity<CategoryDTO> createCategory(@Valid @RequestBody CategoryDTO categoryDTO) {
         return new ResponseEntity<>(categoryService.createCategory(categoryDTO), HttpStatus.CREATED);
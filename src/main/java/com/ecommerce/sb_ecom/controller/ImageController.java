@@ -0,0 +1,26 @@
+package com.ecommerce.sb_ecom.controller;
+
+import com.ecommerce.sb_ecom.service.ImageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+public class ImageController {
+
+    @Autowired
+    private ImageService imageService;
+
+    // product images, public (see WebSecurityConfig) and cacheable, supports conditional and range requests
+    @GetMapping("/images/{fileName:.+}")
+    public void getImage(@PathVariable String fileName,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        imageService.serveImage(fileName, request, response);
+    }
+}
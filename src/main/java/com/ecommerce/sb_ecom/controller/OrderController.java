@@ -1,14 +1,21 @@
 package com.ecommerce.sb_ecom.controller;
 
+import com.ecommerce.sb_ecom.config.AppConstants;
 import com.ecommerce.sb_ecom.payload.OrderDTO;
 import com.ecommerce.sb_ecom.payload.OrderRequestDTO;
+import com.ecommerce.sb_ecom.payload.OrderResponse;
+import com.ecommerce.sb_ecom.service.IdempotencyStore;
 import com.ecommerce.sb_ecom.service.OrderService;
 import com.ecommerce.sb_ecom.util.AuthUtil;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+
 @RestController
 @RequestMapping("/api")
 public class OrderController {
@@ -19,11 +26,44 @@ public class OrderController {
     @Autowired
     private AuthUtil authUtil;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    // with an Idempotency-Key a retried request returns the order of the first attempt instead of placing another one
+    // checkout latency as clients see it (replays included), with a histogram for the percentiles across instances
+    @Timed(value = "checkout", histogram = true, percentiles = {0.5, 0.95, 0.99})
     @PostMapping("/order/users/payments/{paymentMethod}")
     public ResponseEntity<OrderDTO> orderProducts(@PathVariable String paymentMethod,
-                                                  @RequestBody OrderRequestDTO orderRequestDTO) {
+                                                  @RequestBody OrderRequestDTO orderRequestDTO,
+                                                  @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         String emailId = authUtil.loggedInEmail();
-        OrderDTO order = orderService.placeOrder(emailId, orderRequestDTO.getAddressId(), paymentMethod);
+        Long addressId = orderRequestDTO.getAddressId();
+        OrderDTO order = idempotencyKey == null
+                ? orderService.placeOrder(emailId, addressId, paymentMethod)
+                : idempotencyStore.execute(emailId, idempotencyKey, paymentMethod + "|" + addressId, OrderDTO.class,
+                        () -> orderService.placeOrder(emailId, addressId, paymentMethod));
         return new ResponseEntity<>(order, HttpStatus.CREATED);
     }
+
+    // order history of the logged in user, newest first, pass back nextCursor to get older orders
+    @GetMapping("/users/orders")
+    public ResponseEntity<OrderResponse> getUserOrders(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize
+    ) {
+        String emailId = authUtil.loggedInEmail();
+        return new ResponseEntity<>(orderService.getUserOrders(emailId, cursor, pageSize), HttpStatus.OK);
+    }
+
+    // orders placed between from and to (inclusive, yyyy-MM-dd), optionally only those in one status
+    @GetMapping("/admin/orders")
+    public ResponseEntity<OrderResponse> searchOrders(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize
+    ) {
+        return new ResponseEntity<>(orderService.searchOrders(from, to, status, cursor, pageSize), HttpStatus.OK);
+    }
 }
@@ -1,8 +1,10 @@
 package com.ecommerce.sb_ecom.controller;
 
 import com.ecommerce.sb_ecom.config.AppConstants;
+import com.ecommerce.sb_ecom.payload.PriceUpdateJobDTO;
 import com.ecommerce.sb_ecom.payload.ProductDTO;
 import com.ecommerce.sb_ecom.payload.ProductResponse;
+import com.ecommerce.sb_ecom.service.PriceUpdateJobService;
 import com.ecommerce.sb_ecom.service.ProductService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
@@ -20,6 +23,9 @@ public class ProductController {
     @Autowired
     ProductService productService;
 
+    @Autowired
+    PriceUpdateJobService priceUpdateJobService;
+
     @PostMapping("/admin/categories/{categoryId}/product")
     public ResponseEntity<ProductDTO> addProduct(@Valid @RequestBody ProductDTO productDTO,
                                                  @PathVariable Long categoryId) {
@@ -36,6 +42,17 @@ public class ProductController {
         return new ResponseEntity<>(productService.getAllProducts(pageNumber, pageSize, sortBy, sortOrder), HttpStatus.OK);
     }
 
+    // keyset pagination, no OFFSET and no total count -> pass back nextCursor to get the following page
+    @GetMapping("/public/products/cursor")
+    public ResponseEntity<ProductResponse> getAllProductsByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
+            @RequestParam(name = "sortBy", defaultValue = AppConstants.SORT_BY, required = false) String sortBy,
+            @RequestParam(name = "sortOrder", defaultValue = AppConstants.SORT_DIR, required = false) String sortOrder
+    ) {
+        return new ResponseEntity<>(productService.getAllProductsByCursor(cursor, pageSize, sortBy, sortOrder), HttpStatus.OK);
+    }
+
     @GetMapping("/public/categories/{categoryId}/products")
     public ResponseEntity<ProductResponse> getProductsByCategory(
             @PathVariable Long categoryId,
@@ -64,11 +81,23 @@ public class ProductController {
         return new ResponseEntity<>(productService.updateProduct(productId, productDTO), HttpStatus.OK);
     }
 
+    // progress of the cart re-pricing started by a price change
+    @GetMapping("/admin/jobs/{jobId}")
+    public ResponseEntity<PriceUpdateJobDTO> getPriceUpdateJob(@PathVariable String jobId) {
+        return new ResponseEntity<>(priceUpdateJobService.getJob(jobId), HttpStatus.OK);
+    }
+
     @DeleteMapping("/admin/products/{productId}")
     public ResponseEntity<ProductDTO> deleteProduct(@PathVariable Long productId) {
         return new ResponseEntity<>(productService.deleteProduct(productId), HttpStatus.OK);
     }
 
+    // deletes all given products in one transaction, e.g. DELETE /api/admin/products?ids=1,2,3
+    @DeleteMapping("/admin/products")
+    public ResponseEntity<List<ProductDTO>> deleteProducts(@RequestParam("ids") List<Long> productIds) {
+        return new ResponseEntity<>(productService.deleteProducts(productIds), HttpStatus.OK);
+    }
+
     @PutMapping("/products/{productId}/image")
     public ResponseEntity<ProductDTO> updateProductImage(@PathVariable Long productId,
                                                          @RequestParam("image") MultipartFile image) throws IOException {
@@ -0,0 +1,13 @@
+package com.ecommerce.sb_ecom.exception;
+
+// the request clashes with another one that is still running (409), the client can retry it later
+public class ConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ConflictException() {
+    }
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
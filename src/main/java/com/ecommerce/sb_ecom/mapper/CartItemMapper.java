@@ -0,0 +1,23 @@
+package com.ecommerce.sb_ecom.mapper;
+
+import com.ecommerce.sb_ecom.model.CartItem;
+import com.ecommerce.sb_ecom.payload.CartItemDTO;
+import com.ecommerce.sb_ecom.util.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CartItemMapper {
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    public CartItemDTO toDTO(CartItem cartItem) {
+        return new CartItemDTO(
+                cartItem.getId(),
+                cartItem.getCart().getId(),
+                productMapper.toDTO(cartItem.getProduct()),
+                cartItem.getQuantity(),
+                Money.toAmount(cartItem.getPriceCents()));
+    }
+}
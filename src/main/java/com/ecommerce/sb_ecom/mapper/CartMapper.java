@@ -0,0 +1,30 @@
+package com.ecommerce.sb_ecom.mapper;
+
+import com.ecommerce.sb_ecom.model.Cart;
+import com.ecommerce.sb_ecom.model.CartItem;
+import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.util.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class CartMapper {
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    // the cart shows its products with the quantity that is in the cart (not the stock)
+    public CartDTO toDTO(Cart cart) {
+        List<ProductDTO> products = new ArrayList<>(cart.getCartItems().size());
+        for (CartItem item : cart.getCartItems()) {
+            ProductDTO productDTO = productMapper.toDTO(item.getProduct());
+            productDTO.setQuantity(item.getQuantity());
+            products.add(productDTO);
+        }
+        return new CartDTO(cart.getId(), Money.toAmount(cart.getTotalPriceCents()), products);
+    }
+}
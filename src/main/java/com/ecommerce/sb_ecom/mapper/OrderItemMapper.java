@@ -0,0 +1,21 @@
+package com.ecommerce.sb_ecom.mapper;
+
+import com.ecommerce.sb_ecom.model.OrderItem;
+import com.ecommerce.sb_ecom.payload.OrderItemDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OrderItemMapper {
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    public OrderItemDTO toDTO(OrderItem orderItem) {
+        return new OrderItemDTO(
+                orderItem.getId(),
+                productMapper.toDTO(orderItem.getProduct()),
+                orderItem.getQuantity(),
+                orderItem.getOrderedProductPrice());
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.sb_ecom.mapper;
+
+import com.ecommerce.sb_ecom.model.Order;
+import com.ecommerce.sb_ecom.model.OrderItem;
+import com.ecommerce.sb_ecom.model.Payment;
+import com.ecommerce.sb_ecom.payload.OrderDTO;
+import com.ecommerce.sb_ecom.payload.OrderItemDTO;
+import com.ecommerce.sb_ecom.payload.PaymentDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class OrderMapper {
+
+    @Autowired
+    private OrderItemMapper orderItemMapper;
+
+    @Autowired
+    private AddressMapper addressMapper;
+
+    // order items are passed in, Order.orderItems is the inverse side and is not populated on a fresh order
+    public OrderDTO toDTO(Order order, List<OrderItem> orderItems) {
+        List<OrderItemDTO> orderItemDTOS = new ArrayList<>(orderItems.size());
+        for (OrderItem orderItem : orderItems) {
+            orderItemDTOS.add(orderItemMapper.toDTO(orderItem));
+        }
+        return new OrderDTO(
+                order.getId(),
+                order.getEmail(),
+                orderItemDTOS,
+                order.getOrderDate(),
+                order.getPayment() == null ? null : toPaymentDTO(order.getPayment()),
+                order.getTotalAmount(),
+                order.getOrderStatus(),
+                order.getAddress() == null ? null : addressMapper.toDTO(order.getAddress()));
+    }
+
+    public PaymentDTO toPaymentDTO(Payment payment) {
+        return new PaymentDTO(payment.getId(), payment.getPaymentMethod());
+    }
+}
@@ -0,0 +1,42 @@
+package com.ecommerce.sb_ecom.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// durable side of the idempotency keys: one row per (user, key), first IN_PROGRESS, then COMPLETED with the response
+@Entity
+@Table(name = "idempotency_record")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String COMPLETED = "COMPLETED";
+
+    // scope (the user) + the client's key
+    @Id
+    @Column(name = "record_key", length = 200)
+    private String recordKey;
+
+    // what the key was first used for, the same key with another request is rejected
+    private String requestHash;
+
+    private String status;
+
+    // the attempt holding the claim: a random token per claim or takeover, completing or releasing the row needs it
+    @Column(length = 36)
+    private String owner;
+
+    // the response as JSON, set once completed
+    @Column(columnDefinition = "TEXT")
+    private String responseBody;
+
+    // an IN_PROGRESS row past this point was left behind by a crashed attempt and can be taken over
+    private Instant lockedUntil;
+
+    private Instant expiresAt;
+}
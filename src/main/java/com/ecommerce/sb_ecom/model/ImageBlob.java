@@ -0,0 +1,33 @@
+package com.ecommerce.sb_ecom.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// one row per stored image content (see FileServiceImpl): how many products show it and since when it is idle
+// an image nobody references for the grace period is removed by ImageGarbageCollector
+@Entity
+@Table(name = "image_blob", indexes = @Index(name = "idx_image_blob_ref_count_idle", columnList = "ref_count, idle_since"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageBlob {
+
+    // <sha-256 hex>.<ext>, the file name and the value of Product.image
+    @Id
+    @Column(length = 80)
+    private String name;
+
+    private long size;
+
+    // products whose image this is
+    @Column(name = "ref_count")
+    private int refCount;
+
+    // last upload of the content or last reference dropped
+    @Column(name = "idle_since")
+    private Instant idleSince;
+}
@@ -14,8 +14,20 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // order history of a user, newest first
+        @Index(name = "idx_orders_email_date_id", columnList = "email, order_date, id"),
+        // admin search by date range, with or without a status
+        @Index(name = "idx_orders_date_id", columnList = "order_date, id"),
+        @Index(name = "idx_orders_status_date_id", columnList = "order_status, order_date, id")
+})
 public class Order {
+    // checkout stores the order as ACCEPTED, the outbox stage (notification) moves it to CONFIRMED,
+    // or to CONFIRMATION_FAILED when that stage is given up
+    public static final String ACCEPTED = "Order Accepted!";
+    public static final String CONFIRMED = "Order Confirmed";
+    public static final String CONFIRMATION_FAILED = "Order Confirmation Failed";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -28,14 +40,14 @@ public class Order {
 
     private LocalDate orderDate;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "payment_id")
     private Payment payment;
 
     private Double totalAmount;
     private String orderStatus;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "address_id")
     private Address address;
 }
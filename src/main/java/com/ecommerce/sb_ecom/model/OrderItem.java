@@ -6,19 +6,24 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
+// the FK is not indexed by postgres on its own, the order history loads the items by order id
+@Table(indexes = @Index(name = "idx_order_item_order_id", columnList = "order_id"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class OrderItem {
+    // sequence (not IDENTITY) so the order items of a checkout go out as one JDBC batch,
+    // with IDENTITY hibernate has to run every insert right away to learn the id
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq")
+    @SequenceGenerator(name = "order_item_seq", sequenceName = "order_item_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id")
     private Order order;
 
@@ -0,0 +1,43 @@
+package com.ecommerce.sb_ecom.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// transactional outbox: written in the same transaction as the change it describes, handled later by OutboxPoller
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_status_available", columnList = "status, available_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    public static final String PENDING = "PENDING";
+    public static final String DONE = "DONE";
+    // gave up after the maximum number of attempts, needs a look
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String eventType;
+
+    // JSON, read by the handler of the event type
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    private String status;
+    private int attempts;
+    private String lastError;
+
+    private Instant createdAt;
+
+    // not picked up before this point (retry backoff)
+    @Column(name = "available_at")
+    private Instant availableAt;
+
+    private Instant processedAt;
+}
@@ -18,4 +18,6 @@ public class CategoryResponse {
     private Long totalElements;
     private Integer totalPages;
     private boolean lastPage;
+    // only set by the cursor (keyset) listings, pass it back as ?cursor= to get the next page
+    private String nextCursor;
 }
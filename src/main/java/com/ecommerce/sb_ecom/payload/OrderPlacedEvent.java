@@ -0,0 +1,19 @@
+package com.ecommerce.sb_ecom.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// outbox payload of a checkout, with the ordered products
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    public static final String TYPE = "ORDER_PLACED";
+
+    private Long orderId;
+    private String email;
+    private List<Long> productIds;
+}
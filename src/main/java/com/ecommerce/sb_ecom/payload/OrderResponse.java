@@ -0,0 +1,18 @@
+package com.ecommerce.sb_ecom.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderResponse {
+    private List<OrderDTO> content;
+    private Integer pageSize;
+    private boolean lastPage;
+    // pass it back as ?cursor= to get the next (older) page
+    private String nextCursor;
+}
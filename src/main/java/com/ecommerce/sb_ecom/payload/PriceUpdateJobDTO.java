@@ -0,0 +1,22 @@
+package com.ecommerce.sb_ecom.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PriceUpdateJobDTO {
+    private String jobId;
+    private Long productId;
+    private double price;
+    private String status;
+    private long cartItemsUpdated;
+    private long cartsUpdated;
+    private Instant submittedAt;
+    private Instant finishedAt;
+    private String error;
+}
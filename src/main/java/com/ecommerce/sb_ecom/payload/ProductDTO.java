@@ -1,5 +1,8 @@
 package com.ecommerce.sb_ecom.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ecommerce.sb_ecom.util.ImageRenditions;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
@@ -22,4 +25,36 @@ public class ProductDTO {
     private String description;
     private Integer quantity;
     private double price;
+
+    // only set on a price update: the background job that re-prices the carts holding the product
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private PriceUpdateJobDTO priceUpdateJob;
+
+    // used by the projection queries in ProductRepository
+    public ProductDTO(Long id, String name, String image, String description, Integer quantity, double price) {
+        this.id = id;
+        this.name = name;
+        this.image = image;
+        this.description = description;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    // urls of the image and its renditions, derived from the image name
+    // (until a rendition is generated, or for formats without renditions, its url serves the original)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public String getImageUrl() {
+        return ImageRenditions.url(image);
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public String getThumbnailUrl() {
+        return ImageRenditions.url(image, ImageRenditions.Rendition.THUMBNAIL);
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public String getMediumUrl() {
+        return ImageRenditions.url(image, ImageRenditions.Rendition.MEDIUM);
+    }
 }
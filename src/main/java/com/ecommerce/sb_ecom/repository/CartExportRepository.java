@@ -0,0 +1,12 @@
+package com.ecommerce.sb_ecom.repository;
+
+import com.ecommerce.sb_ecom.payload.CartDTO;
+
+import java.util.function.Consumer;
+
+// full cart export for the admin listing, row by row without loading the carts into the persistence context
+public interface CartExportRepository {
+
+    // one cart at a time, in cart id order, must run inside a transaction (postgres only honours the fetch size then)
+    void streamCarts(int fetchSize, Consumer<CartDTO> consumer);
+}
@@ -0,0 +1,72 @@
+package com.ecommerce.sb_ecom.repository;
+
+import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.util.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+// forward-only cursor with a fetch size: the driver holds fetchSize rows, only the cart being read is in memory
+public class CartExportRepositoryImpl implements CartExportRepository {
+
+    // the product quantity in a cart listing is the quantity in the cart (same as CartMapper)
+    private static final String CARTS_SQL = "SELECT c.cart_id, c.total_price_cents, " +
+            "p.product_id, p.name, p.image, p.description, ci.quantity, p.price " +
+            "FROM cart c " +
+            "LEFT JOIN cart_item ci ON ci.cart_id = c.cart_id " +
+            "LEFT JOIN product p ON p.product_id = ci.product_id " +
+            "ORDER BY c.cart_id, ci.cart_item_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void streamCarts(int fetchSize, Consumer<CartDTO> consumer) {
+        CartGrouper grouper = new CartGrouper(consumer);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(CARTS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, grouper);
+        grouper.finish();
+    }
+
+    // rows come ordered by cart, a cart is handed over when the first row of the next one arrives
+    private static final class CartGrouper implements RowCallbackHandler {
+        private final Consumer<CartDTO> consumer;
+        private CartDTO current;
+
+        private CartGrouper(Consumer<CartDTO> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long cartId = rs.getLong("cart_id");
+            if (current == null || current.getId() != cartId) {
+                finish();
+                current = new CartDTO();
+                current.setId(cartId);
+                current.setTotal(Money.toAmount(rs.getLong("total_price_cents")));
+            }
+            long productId = rs.getLong("product_id");
+            if (!rs.wasNull()) {
+                current.getProducts().add(new ProductDTO(productId, rs.getString("name"), rs.getString("image"),
+                        rs.getString("description"), rs.getInt("quantity"), rs.getDouble("price")));
+            }
+        }
+
+        private void finish() {
+            if (current != null) {
+                consumer.accept(current);
+                current = null;
+            }
+        }
+    }
+}
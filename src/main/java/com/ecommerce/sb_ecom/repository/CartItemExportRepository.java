@@ -0,0 +1,12 @@
+package com.ecommerce.sb_ecom.repository;
+
+import com.ecommerce.sb_ecom.payload.CartItemDTO;
+
+import java.util.function.Consumer;
+
+// full cart item export for the admin listing, row by row without loading the items into the persistence context
+public interface CartItemExportRepository {
+
+    // in cart item id order, must run inside a transaction (postgres only honours the fetch size then)
+    void streamCartItems(int fetchSize, Consumer<CartItemDTO> consumer);
+}
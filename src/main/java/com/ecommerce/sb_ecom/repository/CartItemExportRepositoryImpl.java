@@ -0,0 +1,39 @@
+package com.ecommerce.sb_ecom.repository;
+
+import com.ecommerce.sb_ecom.payload.CartItemDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.util.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.function.Consumer;
+
+// forward-only cursor with a fetch size: the driver holds fetchSize rows, each row is handed over as soon as it is read
+public class CartItemExportRepositoryImpl implements CartItemExportRepository {
+
+    private static final String CART_ITEMS_SQL = "SELECT ci.cart_item_id, ci.cart_id, ci.quantity, ci.price_cents, " +
+            "p.product_id, p.name, p.image, p.description, p.quantity AS product_quantity, p.price " +
+            "FROM cart_item ci " +
+            "JOIN product p ON p.product_id = ci.product_id " +
+            "ORDER BY ci.cart_item_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void streamCartItems(int fetchSize, Consumer<CartItemDTO> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(CART_ITEMS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            ProductDTO productDTO = new ProductDTO(rs.getLong("product_id"), rs.getString("name"), rs.getString("image"),
+                    rs.getString("description"), rs.getInt("product_quantity"), rs.getDouble("price"));
+            consumer.accept(new CartItemDTO(rs.getLong("cart_item_id"), rs.getLong("cart_id"), productDTO,
+                    rs.getInt("quantity"), Money.toAmount(rs.getLong("price_cents"))));
+        });
+    }
+}
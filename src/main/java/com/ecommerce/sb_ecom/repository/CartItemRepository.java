@@ -1,15 +1,36 @@
 package com.ecommerce.sb_ecom.repository;
 
 import com.ecommerce.sb_ecom.model.CartItem;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
-public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+import java.util.Collection;
+import java.util.List;
+
+public interface CartItemRepository extends JpaRepository<CartItem, Long>, CartItemExportRepository {
+    @EntityGraph(attributePaths = {"product"})
+    List<CartItem> findAll();
+
+    @EntityGraph(attributePaths = {"product"})
+    Page<CartItem> findAllBy(Pageable pageable);
+
     @Query("SELECT ci FROM CartItem ci where ci.cart.id = ?1 AND ci.product.id = ?2")
     CartItem findCartItemByProductIdAndCartId(Long cartId, Long productId);
 
     @Modifying // tells jpa that we are intending to modify the DB, otherwise it expects a select query
     @Query("DELETE FROM CartItem ci WHERE ci.cart.id = ?1 AND ci.product.id = ?2")
     void deleteCartItemByProductIdAndCartId(Long cartId, Long productId);
+
+    // price change of a product, one statement for all carts
+    @Modifying
+    @Query("UPDATE CartItem ci SET ci.priceCents = ?2 WHERE ci.product.id = ?1 AND ci.priceCents <> ?2")
+    int updatePriceByProductId(Long productId, long priceCents);
+
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.product.id IN ?1")
+    int deleteAllByProductIdIn(Collection<Long> productIds);
 }
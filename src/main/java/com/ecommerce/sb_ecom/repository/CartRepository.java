@@ -1,17 +1,30 @@
 package com.ecommerce.sb_ecom.repository;
 
 import com.ecommerce.sb_ecom.model.Cart;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface CartRepository extends JpaRepository<Cart, Long> {
+// fetch plans: cart view and checkout serialize the items and their products, so they are loaded in the same select
+public interface CartRepository extends JpaRepository<Cart, Long>, CartWriteRepository, CartExportRepository {
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})
     @Query("SELECT c FROM Cart c where c.user.email = ?1")
     Cart findCartByEmail(String email);
 
+    // checkout: row lock on the cart, a second checkout of the same cart waits for the first one and then finds it empty
+    // (only the id, the cart itself is read after the lock and the flush of its in-memory changes)
+    @Query(value = "SELECT cart_id FROM cart WHERE user_id = (SELECT user_id FROM users WHERE email = ?1) FOR UPDATE",
+            nativeQuery = true)
+    Long lockCartIdByEmail(String email);
+
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})
     @Query("SELECT c FROM Cart c where c.user.email = ?1 AND c.id = ?2")
     Cart findCartByEmailAndId(String email, Long cartId);
 
@@ -21,6 +34,47 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c where c.id = ?1")
     Cart findByIdd(Long cartId);
 
-    @EntityGraph(attributePaths = {"cartItems"})  // ✅ Forces Hibernate to load cartItems eagerly
+    @Query("SELECT c.user.email FROM Cart c where c.id = ?1")
+    String findEmailByCartId(Long cartId);
+
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})  // ✅ Forces Hibernate to load cartItems eagerly
     Optional<Cart> findById(Long cartId);
+
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})
+    List<Cart> findAll();
+
+    // admin listing: a page of cart ids first, a collection fetch cannot be paged in SQL
+    @Query(value = "SELECT c.id FROM Cart c", countQuery = "SELECT count(c) FROM Cart c")
+    Page<Long> findCartIds(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})
+    @Query("SELECT c FROM Cart c WHERE c.id IN ?1")
+    List<Cart> findWithItemsByIdIn(Collection<Long> cartIds);
+
+    // price change of a product: the totals move by (new - old price) * quantity, one increment per cart,
+    // has to run before the cart items get the new price
+    @Modifying
+    @Query("UPDATE Cart c SET c.totalPriceCents = c.totalPriceCents + " +
+            "(SELECT COALESCE(SUM((?2 - ci.priceCents) * ci.quantity), 0) FROM CartItem ci WHERE ci.cart.id = c.id AND ci.product.id = ?1) " +
+            "WHERE c.id IN (SELECT ci.cart.id FROM CartItem ci WHERE ci.product.id = ?1 AND ci.priceCents <> ?2)")
+    int adjustTotalsForPriceChange(Long productId, long priceCents);
+
+    // product deletion: one statement for the totals of all carts holding any of the products
+    @Modifying
+    @Query("UPDATE Cart c SET c.totalPriceCents = c.totalPriceCents - " +
+            "(SELECT COALESCE(SUM(ci.priceCents * ci.quantity), 0) FROM CartItem ci WHERE ci.cart.id = c.id AND ci.product.id IN ?1) " +
+            "WHERE c.id IN (SELECT ci.cart.id FROM CartItem ci WHERE ci.product.id IN ?1)")
+    int subtractProductsFromTotals(Collection<Long> productIds);
+
+    // drift reconciliation walks the carts by id, one page of ids at a time
+    @Query("SELECT c.id FROM Cart c WHERE c.id > ?1 ORDER BY c.id")
+    List<Long> findIdsAfter(Long afterId, Pageable pageable);
+
+    // only the carts whose total differs from the sum of their items are written
+    @Modifying
+    @Query("UPDATE Cart c SET c.totalPriceCents = " +
+            "(SELECT COALESCE(SUM(ci.priceCents * ci.quantity), 0) FROM CartItem ci WHERE ci.cart.id = c.id) " +
+            "WHERE c.id BETWEEN ?1 AND ?2 AND c.totalPriceCents <> " +
+            "(SELECT COALESCE(SUM(ci.priceCents * ci.quantity), 0) FROM CartItem ci WHERE ci.cart.id = c.id)")
+    int repairTotalsBetween(Long fromId, Long toId);
 }
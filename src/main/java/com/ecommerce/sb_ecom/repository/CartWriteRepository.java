@@ -0,0 +1,18 @@
+package com.ecommerce.sb_ecom.repository;
+
+import java.util.List;
+
+// write-behind of the in-memory carts (CartStore), mixed into CartRepository
+public interface CartWriteRepository {
+    // replaces the items and the total of each given cart with the given state
+    void writeCarts(List<CartRow> carts);
+
+    // the same in a savepoint: a failure undoes this write only, the surrounding transaction can go on
+    void writeCartsInSavepoint(List<CartRow> carts);
+
+    record CartRow(Long cartId, long totalPriceCents, List<CartItemRow> items) {
+    }
+
+    record CartItemRow(Long productId, int quantity, long priceCents) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.ecommerce.sb_ecom.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+// three JDBC batches per flush, whatever the number of carts: update the totals, delete the old items, insert the current ones
+// runs on the connection of the surrounding transaction
+public class CartWriteRepositoryImpl implements CartWriteRepository {
+
+    private static final String DELETE_ITEMS_SQL = "DELETE FROM cart_item WHERE cart_id = ?";
+    private static final String INSERT_ITEM_SQL = "INSERT INTO cart_item (cart_id, product_id, quantity, price_cents) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_TOTAL_SQL = "UPDATE cart SET total_price_cents = ? WHERE cart_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void writeCarts(List<CartRow> carts) {
+        if (carts.isEmpty()) {
+            return;
+        }
+        // the totals first: it locks the cart rows, so two writes of the same cart run one after the other
+        // (the second one's delete then sees the items the first one inserted, instead of adding its own next to them)
+        jdbcTemplate.batchUpdate(UPDATE_TOTAL_SQL, carts, carts.size(), (ps, cart) -> {
+            ps.setLong(1, cart.totalPriceCents());
+            ps.setLong(2, cart.cartId());
+        });
+
+        jdbcTemplate.batchUpdate(DELETE_ITEMS_SQL, carts, carts.size(),
+                (ps, cart) -> ps.setLong(1, cart.cartId()));
+
+        List<Object[]> items = new ArrayList<>();
+        for (CartRow cart : carts) {
+            for (CartItemRow item : cart.items()) {
+                items.add(new Object[]{cart.cartId(), item.productId(), item.quantity(), item.priceCents()});
+            }
+        }
+        if (!items.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, items);
+        }
+    }
+
+    @Override
+    public void writeCartsInSavepoint(List<CartRow> carts) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                writeCarts(carts);
+            } catch (RuntimeException e) {
+                connection.rollback(savepoint);
+                throw e;
+            }
+            connection.releaseSavepoint(savepoint);
+            return null;
+        });
+    }
+}
@@ -1,8 +1,15 @@
 package com.ecommerce.sb_ecom.repository;
 
 import com.ecommerce.sb_ecom.model.Category;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Category findByName(String name);
+
+    // keyset scrolling, seeks on (sort property, id) and does not run a count query
+    Window<Category> findAllBy(ScrollPosition position, Sort sort, Limit limit);
 }
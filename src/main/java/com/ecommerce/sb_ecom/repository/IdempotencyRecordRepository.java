@@ -0,0 +1,38 @@
+package com.ecommerce.sb_ecom.repository;
+
+import com.ecommerce.sb_ecom.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // plain insert (save() would merge into an existing row), a duplicate key fails with DataIntegrityViolationException
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_record (record_key, request_hash, status, owner, locked_until, expires_at) " +
+            "VALUES (?1, ?2, 'IN_PROGRESS', ?3, ?4, ?5)", nativeQuery = true)
+    void insertClaim(String recordKey, String requestHash, String owner, Instant lockedUntil, Instant expiresAt);
+
+    // takes over a claim whose attempt is gone, only one of several competing attempts gets 1
+    // the new owner shuts the old attempt out, should it still be running after all
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.owner = ?2, r.lockedUntil = ?3 " +
+            "WHERE r.recordKey = ?1 AND r.status = 'IN_PROGRESS' AND r.lockedUntil < ?4")
+    int takeOverStaleClaim(String recordKey, String owner, Instant lockedUntil, Instant now);
+
+    // 0 when the claim was taken over meanwhile
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = 'COMPLETED', r.responseBody = ?3, r.expiresAt = ?4 " +
+            "WHERE r.recordKey = ?1 AND r.owner = ?2 AND r.status = 'IN_PROGRESS'")
+    int complete(String recordKey, String owner, String responseBody, Instant expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordKey = ?1 AND r.owner = ?2 AND r.status = 'IN_PROGRESS'")
+    int release(String recordKey, String owner);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < ?1")
+    int deleteExpired(Instant now);
+}
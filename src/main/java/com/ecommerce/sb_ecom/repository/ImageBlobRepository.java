@@ -0,0 +1,40 @@
+package com.ecommerce.sb_ecom.repository;
+
+import com.ecommerce.sb_ecom.model.ImageBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+
+    // plain insert (save() would merge into an existing row), a duplicate key fails with DataIntegrityViolationException
+    @Modifying
+    @Query(value = "INSERT INTO image_blob (name, size, ref_count, idle_since) VALUES (?1, ?2, 0, ?3)", nativeQuery = true)
+    void insertBlob(String name, long size, Instant idleSince);
+
+    // the content was uploaded again: 0 when it is not (or no longer) stored
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.idleSince = ?2 WHERE b.name = ?1")
+    int touch(String name, Instant now);
+
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.refCount = b.refCount + 1 WHERE b.name = ?1")
+    int addReference(String name);
+
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.refCount = CASE WHEN b.refCount > ?2 THEN b.refCount - ?2 ELSE 0 END, " +
+            "b.idleSince = ?3 WHERE b.name = ?1")
+    int removeReferences(String name, int count, Instant now);
+
+    @Query("SELECT b.name FROM ImageBlob b WHERE b.refCount = 0 AND b.idleSince < ?1 ORDER BY b.idleSince")
+    List<String> findUnreferencedIdleBefore(Instant cutoff, Pageable pageable);
+
+    // conditions checked again under the row lock: an upload or reference in between keeps the blob
+    @Modifying
+    @Query("DELETE FROM ImageBlob b WHERE b.name = ?1 AND b.refCount = 0 AND b.idleSince < ?2")
+    int deleteIfUnreferenced(String name, Instant cutoff);
+}
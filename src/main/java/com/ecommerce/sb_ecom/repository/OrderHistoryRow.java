@@ -0,0 +1,10 @@
+package com.ecommerce.sb_ecom.repository;
+
+import java.time.LocalDate;
+
+// one order with its payment and address, flat so that JPQL can build it in the select (order history listings)
+public record OrderHistoryRow(Long id, String email, LocalDate orderDate, Double totalAmount, String orderStatus,
+                              Long paymentId, String paymentMethod,
+                              Long addressId, String street, String building, String city, String state,
+                              String country, String pincode) {
+}
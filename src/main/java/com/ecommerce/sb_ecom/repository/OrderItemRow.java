@@ -0,0 +1,7 @@
+package com.ecommerce.sb_ecom.repository;
+
+// one order item with its product, flat so that JPQL can build it in the select (order history listings)
+public record OrderItemRow(Long orderId, Long id, Integer quantity, double orderedProductPrice,
+                           Long productId, String productName, String image, String description,
+                           Integer productQuantity, double price) {
+}
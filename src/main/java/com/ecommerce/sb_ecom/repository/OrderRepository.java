@@ -1,7 +1,55 @@
 package com.ecommerce.sb_ecom.repository;
 
 import com.ecommerce.sb_ecom.model.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    // status transitions only from the expected status, a redelivered event changes nothing
+    @Modifying
+    @Query("UPDATE Order o SET o.orderStatus = ?3 WHERE o.id = ?1 AND o.orderStatus = ?2")
+    int updateStatus(Long orderId, String fromStatus, String toStatus);
+
+    // order history, newest first, keyset on (orderDate, id): each page continues below the last row of the previous one
+    // (the first page starts below a sentinel), served by the composite indexes on Order without a sort or a count
+    String HISTORY_ROW = "select new com.ecommerce.sb_ecom.repository.OrderHistoryRow(o.id, o.email, o.orderDate, o.totalAmount, " +
+            "o.orderStatus, p.id, p.paymentMethod, a.id, a.street, a.building, a.city, a.state, a.country, a.pincode) " +
+            "from Order o left join o.payment p left join o.address a ";
+    String BEFORE_KEY = "(o.orderDate < :beforeDate or (o.orderDate = :beforeDate and o.id < :beforeId)) ";
+    String NEWEST_FIRST = "order by o.orderDate desc, o.id desc";
+
+    @Query(HISTORY_ROW + "where o.email = :email and " + BEFORE_KEY + NEWEST_FIRST)
+    List<OrderHistoryRow> findHistoryByEmail(@Param("email") String email,
+                                             @Param("beforeDate") LocalDate beforeDate,
+                                             @Param("beforeId") Long beforeId,
+                                             Pageable pageable);
+
+    @Query(HISTORY_ROW + "where o.orderDate >= :from and o.orderDate <= :to and " + BEFORE_KEY + NEWEST_FIRST)
+    List<OrderHistoryRow> findHistoryByDateRange(@Param("from") LocalDate from,
+                                                 @Param("to") LocalDate to,
+                                                 @Param("beforeDate") LocalDate beforeDate,
+                                                 @Param("beforeId") Long beforeId,
+                                                 Pageable pageable);
+
+    @Query(HISTORY_ROW + "where o.orderStatus = :status and o.orderDate >= :from and o.orderDate <= :to and " + BEFORE_KEY + NEWEST_FIRST)
+    List<OrderHistoryRow> findHistoryByStatusAndDateRange(@Param("status") String status,
+                                                          @Param("from") LocalDate from,
+                                                          @Param("to") LocalDate to,
+                                                          @Param("beforeDate") LocalDate beforeDate,
+                                                          @Param("beforeId") Long beforeId,
+                                                          Pageable pageable);
+
+    // the items of a whole page of orders in one select
+    @Query("select new com.ecommerce.sb_ecom.repository.OrderItemRow(oi.order.id, oi.id, oi.quantity, oi.orderedProductPrice, " +
+            "pr.id, pr.name, pr.image, pr.description, pr.quantity, pr.price) " +
+            "from OrderItem oi join oi.product pr where oi.order.id in :orderIds order by oi.id")
+    List<OrderItemRow> findItemRowsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
 }
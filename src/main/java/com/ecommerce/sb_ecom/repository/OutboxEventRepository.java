@@ -0,0 +1,43 @@
+package com.ecommerce.sb_ecom.repository;
+
+import com.ecommerce.sb_ecom.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // checkout: flushes the order before it, the event refers to it
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO outbox_event (event_type, payload, status, attempts, created_at, available_at) " +
+            "VALUES (?1, ?2, 'PENDING', 0, ?3, ?3)", nativeQuery = true)
+    void insertPending(String eventType, String payload, Instant createdAt);
+
+    @Query("SELECT e.id FROM OutboxEvent e WHERE e.status = 'PENDING' AND e.availableAt <= ?1 ORDER BY e.id")
+    List<Long> findDueIds(Instant now, Pageable pageable);
+
+    // row lock for the handling transaction, an event locked by another poller (node) is skipped, not waited for
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e WHERE e.id = ?1 AND e.status = 'PENDING'")
+    Optional<OutboxEvent> lockPending(Long id);
+
+    @Query("SELECT COUNT(e) FROM OutboxEvent e WHERE e.status = 'PENDING'")
+    long countPending();
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e WHERE e.status = 'PENDING'")
+    Instant findOldestPendingCreatedAt();
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = 'DONE' AND e.processedAt < ?1")
+    int deleteDoneBefore(Instant before);
+}
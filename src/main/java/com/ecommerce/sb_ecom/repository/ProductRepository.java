@@ -2,11 +2,55 @@ package com.ecommerce.sb_ecom.repository;
 
 import com.ecommerce.sb_ecom.model.Category;
 import com.ecommerce.sb_ecom.model.Product;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
-    Page<Product> findByCategoryOrderByPriceAsc(Category category, Pageable pageDetails);
-    Page<Product> findByNameLikeIgnoreCase(String keyword, Pageable pageDetails);
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductStockRepository {
+    // keyset scrolling, seeks on (sort property, id) and does not run a count query
+    Window<Product> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+    boolean existsByCategoryAndName(Category category, String name);
+
+    // price update job: the committed price, the product row stays locked until the job's transaction ends
+    // (null when the product is gone)
+    @Query(value = "SELECT price FROM product WHERE product_id = ?1 FOR UPDATE", nativeQuery = true)
+    Double lockPriceById(Long productId);
+
+    // catalog listings: the rows are built straight into ProductDTO, no Product entity is hydrated,
+    // so there are no dirty-checking snapshots and nothing to flush (read-only tx -> Hibernate flush mode MANUAL)
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL"))
+    @Query(value = "select new com.ecommerce.sb_ecom.payload.ProductDTO(p.id, p.name, p.image, p.description, p.quantity, p.price) " +
+            "from Product p",
+            countQuery = "select count(p) from Product p")
+    Page<ProductDTO> findAllProductDTOs(Pageable pageDetails);
+
+    // same order as the old findByCategoryOrderByPriceAsc: price first, then the requested sort
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL"))
+    @Query(value = "select new com.ecommerce.sb_ecom.payload.ProductDTO(p.id, p.name, p.image, p.description, p.quantity, p.price) " +
+            "from Product p where p.category.id = :categoryId order by p.price asc",
+            countQuery = "select count(p) from Product p where p.category.id = :categoryId")
+    Page<ProductDTO> findProductDTOsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageDetails);
+
+    // keyword search: the ids come from ProductSearchIndex, the caller restores the index order
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL"))
+    @Query("select new com.ecommerce.sb_ecom.payload.ProductDTO(p.id, p.name, p.image, p.description, p.quantity, p.price) " +
+            "from Product p where p.id in :ids")
+    List<ProductDTO> findProductDTOsByIdIn(@Param("ids") Collection<Long> ids);
 }
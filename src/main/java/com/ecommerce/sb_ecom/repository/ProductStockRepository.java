@@ -0,0 +1,11 @@
+package com.ecommerce.sb_ecom.repository;
+
+import java.util.List;
+import java.util.Map;
+
+// stock reservation, mixed into ProductRepository
+public interface ProductStockRepository {
+    // takes the given quantities off the stock, each product only if enough is left
+    // returns the ids of the products that did not have enough stock (those rows are left untouched)
+    List<Long> decreaseStock(Map<Long, Integer> quantitiesByProductId);
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.sb_ecom.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// one conditional UPDATE per product, sent as a single JDBC batch:
+// the check and the decrement are one atomic statement, so concurrent checkouts cannot oversell
+// (no read-modify-write on a loaded entity), and the per statement update counts tell which products were short
+// runs on the connection of the surrounding JPA transaction
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    private static final String DECREASE_STOCK_SQL =
+            "UPDATE product SET quantity = quantity - ? WHERE product_id = ? AND quantity >= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> decreaseStock(Map<Long, Integer> quantitiesByProductId) {
+        // always lock the rows in id order, two carts with the same products cannot deadlock each other
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(new TreeMap<>(quantitiesByProductId).entrySet());
+        int[][] updateCounts = jdbcTemplate.batchUpdate(DECREASE_STOCK_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setLong(2, entry.getKey());
+            ps.setInt(3, entry.getValue());
+        });
+        List<Long> shortProductIds = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : updateCounts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    shortProductIds.add(entries.get(index).getKey());
+                }
+                index++;
+            }
+        }
+        return shortProductIds;
+    }
+}
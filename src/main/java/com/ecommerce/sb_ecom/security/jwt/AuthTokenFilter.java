@@ -1,6 +1,11 @@
 package com.ecommerce.sb_ecom.security.jwt;
 
+import com.ecommerce.sb_ecom.security.services.PrincipalCache;
 import com.ecommerce.sb_ecom.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,6 +13,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -16,6 +22,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class AuthTokenFilter extends OncePerRequestFilter {
@@ -25,18 +32,54 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // claims-only mode: the principal comes from the token claims, no user lookup at all
+    // (roles in a token stay as they were at signin until it expires)
+    @Value("${spring.app.jwtClaimsOnly}")
+    private boolean claimsOnly;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+    // time spent authenticating (not the rest of the chain), by outcome
+    private Timer authenticatedTimer;
+    private Timer anonymousTimer;
+    private Timer rejectedTimer;
+
+    @PostConstruct
+    public void initMetrics() {
+        authenticatedTimer = authTimer("authenticated");
+        anonymousTimer = authTimer("anonymous");
+        rejectedTimer = authTimer("rejected");
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         logger.debug("AuthTokenFilter called for URI: {}", request.getRequestURI());
+        long start = System.nanoTime();
+        Timer outcome = rejectedTimer;
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            if (jwt == null) {
+                outcome = anonymousTimer;
+            }
+            // the token is verified and parsed once, the claims carry the username
+            Claims claims = jwt == null ? null : jwtUtils.parseJwtClaims(jwt);
+            if (claims != null && !tokenRevocationList.isRevoked(claims.getId())) {
+                String username = claims.getSubject();
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = claimsOnly ? jwtUtils.getUserDetailsFromClaims(claims) : null;
+                if (userDetails == null) {
+                    userDetails = principalCache.get(username, userDetailsService);
+                }
 
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails,
@@ -47,14 +90,23 @@ public class AuthTokenFilter extends OncePerRequestFilter {
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                outcome = authenticatedTimer;
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
         }
+        outcome.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
         filterChain.doFilter(request, response);
     }
 
+    private Timer authTimer(String outcome) {
+        return Timer.builder("auth.token.filter")
+                .description("JWT verification and principal lookup per request")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     private String parseJwt(HttpServletRequest request) {
 //        String jwt = jwtUtils.getJwtFromHeader(request);
         String jwt = jwtUtils.getJwtFromCookies(request);
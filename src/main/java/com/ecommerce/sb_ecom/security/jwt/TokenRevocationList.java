@@ -0,0 +1,52 @@
+package com.ecommerce.sb_ecom.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+// ids (jti) of tokens that were signed out before they expired
+// an entry only has to live until the token itself expires, after that the parser rejects the token anyway,
+// so the list stays as short as the number of signouts within one token lifetime
+// no size bound: evicting an entry early would make a signed out token valid again
+// note: kept in memory, with more than one instance every instance needs its own signout (or a shared store)
+@Component
+public class TokenRevocationList {
+
+    private final Cache<String, Instant> revoked;
+
+    public TokenRevocationList() {
+        revoked = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Instant>() {
+                    @Override
+                    public long expireAfterCreate(String tokenId, Instant expiresAt, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenId, Instant expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenId, Instant expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public void revoke(String tokenId, Date expiresAt) {
+        if (tokenId != null && expiresAt != null) {
+            revoked.put(tokenId, expiresAt.toInstant());
+        }
+    }
+
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && revoked.getIfPresent(tokenId) != null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.sb_ecom.security.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// authenticated principals by username, so AuthTokenFilter does not load the user + roles on every request
+// bounded by size and TTL (the TTL is the upper bound for a role change made outside the app to show up),
+// signout and role updates evict the user right away
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, UserDetailsImpl> principals;
+
+    public PrincipalCache(MeterRegistry meterRegistry,
+                          @Value("${spring.app.principalCache.maxSize}") long maxSize,
+                          @Value("${spring.app.principalCache.ttlSeconds}") long ttlSeconds) {
+        principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "auth.principals");
+        Gauge.builder("auth.principals.hit.ratio", principals, cache -> cache.stats().hitRate())
+                .description("Share of authenticated requests answered without a user lookup")
+                .register(meterRegistry);
+    }
+
+    // UsernameNotFoundException from the loader is passed through and nothing is cached
+    public UserDetailsImpl get(String username, UserDetailsService userDetailsService) {
+        return principals.get(username, name -> (UserDetailsImpl) userDetailsService.loadUserByUsername(name));
+    }
+
+    public void evict(String username) {
+        principals.invalidate(username);
+    }
+}
@@ -1,39 +1,41 @@
 package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.exception.ResourceNotFoundException;
+import com.ecommerce.sb_ecom.mapper.AddressMapper;
 import com.ecommerce.sb_ecom.model.Address;
 import com.ecommerce.sb_ecom.model.User;
 import com.ecommerce.sb_ecom.payload.AddressDTO;
 import com.ecommerce.sb_ecom.repository.AddressRepository;
 import com.ecommerce.sb_ecom.repository.UserRepository;
-import org.modelmapper.ModelMapper;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
 @Service
+@Timed("app.service")
 public class AddressServiceImpl implements AddressService {
 
     @Autowired
-    private ModelMapper modelMapper;
+    private AddressMapper addressMapper;
 
     @Autowired
     private AddressRepository addressRepository;
 
     @Override
     public AddressDTO createAddress(AddressDTO addressDTO, User user) {
-        Address address = modelMapper.map(addressDTO, Address.class);
+        Address address = addressMapper.toEntity(addressDTO);
         user.getAddresses().add(address);
         address.setUser(user); // this automatically updated the user also, no need to save it explicitly
-        return modelMapper.map(addressRepository.save(address), AddressDTO.class);
+        return addressMapper.toDTO(addressRepository.save(address));
     }
 
     @Override
     public List<AddressDTO> getAddresses() {
         List<Address> addresses = addressRepository.findAll();
         return addresses.stream()
-                .map(address -> modelMapper.map(address, AddressDTO.class))
+                .map(address -> addressMapper.toDTO(address))
                 .toList();
     }
 
@@ -41,14 +43,14 @@ public class AddressServiceImpl implements AddressService {
     public AddressDTO getAddressById(Long addressId) {
         Address address = addressRepository.findById(addressId)
                 .orElseThrow(() -> new ResourceNotFoundException("Address", "id", addressId));
-        return modelMapper.map(address, AddressDTO.class);
+        return addressMapper.toDTO(address);
     }
 
     @Override
     public List<AddressDTO> getUserAddresses(User user) {
         List<Address> addresses = user.getAddresses();
         return addresses.stream()
-                .map(address -> modelMapper.map(address, AddressDTO.class))
+                .map(address -> addressMapper.toDTO(address))
                 .toList();
     }
 
@@ -62,7 +64,7 @@ public class AddressServiceImpl implements AddressService {
         address.setCountry(addressDTO.getCountry());
         address.setStreet(address.getStreet());
         address.setBuilding(address.getBuilding());
-        return modelMapper.map(addressRepository.save(address), AddressDTO.class);
+        return addressMapper.toDTO(addressRepository.save(address));
     }
 
     @Override
@@ -1,9 +1,11 @@
 package com.ecommerce.sb_ecom.service;
 
-import com.ecommerce.sb_ecom.payload.CartItemDTO;
+import com.ecommerce.sb_ecom.payload.CartItemResponse;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface CartItemService {
-    List<CartItemDTO> getAllCartItems();
+    CartItemResponse getAllCartItems(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder);
+    void streamAllCartItems(OutputStream out) throws IOException;
 }
@@ -1,14 +1,25 @@
 package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.exception.APIException;
+import com.ecommerce.sb_ecom.mapper.CartItemMapper;
 import com.ecommerce.sb_ecom.model.CartItem;
 import com.ecommerce.sb_ecom.payload.CartItemDTO;
-import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.payload.CartItemResponse;
 import com.ecommerce.sb_ecom.repository.CartItemRepository;
-import org.modelmapper.ModelMapper;
+import com.ecommerce.sb_ecom.util.JsonArrayStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 @Service
@@ -18,29 +29,57 @@ public class CartItemServiceImpl implements CartItemService {
     private CartItemRepository cartItemRepository;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private CartItemMapper cartItemMapper;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${project.export.fetchSize}")
+    private int exportFetchSize;
 
     @Override
-    public List<CartItemDTO> getAllCartItems() {
-        List<CartItem> cartItems = cartItemRepository.findAll();
-        System.out.println("Kshitij size = " + cartItems.size());
+    public CartItemResponse getAllCartItems(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+        // changes still in the write-behind store would be missing otherwise
+        cartStore.flushAll();
+        Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
+                ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+        Pageable pageDetails = PageRequest.of(pageNumber, pageSize, sortByAndOrder);
+        Page<CartItem> cartItemPage = cartItemRepository.findAllBy(pageDetails);
 
-        if (cartItems.isEmpty()) {
+        if (cartItemPage.isEmpty()) {
             throw new APIException("No cart item exists");
         }
 
-        for(CartItem cartItem : cartItems) {
-            System.out.println(cartItem.getProduct());
-        }
+        List<CartItemDTO> cartItemDTOS = cartItemPage.getContent().stream()
+                .map(cartItem -> cartItemMapper.toDTO(cartItem))
+                .toList();
 
-        List<CartItemDTO> cartItemDTOS = cartItems.stream().map(cartItem -> {
-            CartItemDTO cartItemDTO = modelMapper.map(cartItem, CartItemDTO.class);
-            cartItemDTO.setCartId(cartItem.getCart().getId());
-            ProductDTO productDTO = modelMapper.map(cartItem.getProduct(), ProductDTO.class);
-            cartItemDTO.setProduct(productDTO);
-            return cartItemDTO;
-        }).toList();
+        CartItemResponse cartItemResponse = new CartItemResponse();
+        cartItemResponse.setContent(cartItemDTOS);
+        cartItemResponse.setPageNumber(cartItemPage.getNumber());
+        cartItemResponse.setPageSize(cartItemPage.getSize());
+        cartItemResponse.setTotalElements(cartItemPage.getTotalElements());
+        cartItemResponse.setTotalPages(cartItemPage.getTotalPages());
+        cartItemResponse.setLastPage(cartItemPage.isLast());
+        return cartItemResponse;
+    }
 
-        return cartItemDTOS;
+    // every cart item as one JSON array, written while the rows are read
+    @Override
+    public void streamAllCartItems(OutputStream out) throws IOException {
+        // the flush writes, so it runs before the read-only transaction of the cursor
+        cartStore.flushAll();
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        JsonArrayStream jsonArray = JsonArrayStream.start(objectMapper, out);
+        readOnlyTransaction.executeWithoutResult(status -> cartItemRepository.streamCartItems(exportFetchSize, jsonArray::write));
+        jsonArray.end();
     }
 }
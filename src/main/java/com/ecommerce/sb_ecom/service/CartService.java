@@ -1,17 +1,19 @@
 package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.CartResponse;
 import jakarta.transaction.Transactional;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface CartService {
     CartDTO addProductToCart(Long productId, Integer quantity);
-    List<CartDTO> getAllCarts();
+    CartResponse getAllCarts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder);
+    void streamAllCarts(OutputStream out) throws IOException;
     CartDTO getCart(String email, Long cartId);
     @Transactional
     CartDTO updateProductQuantityInCart(Long productId, Integer quantity);
     @Transactional
     String deleteProductFromCart(Long cartId, Long productId);
-    void updateProductInCarts(Long cartId, Long productId);
 }
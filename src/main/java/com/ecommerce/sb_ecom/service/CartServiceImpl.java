@@ -2,24 +2,42 @@ package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.exception.APIException;
 import com.ecommerce.sb_ecom.exception.ResourceNotFoundException;
+import com.ecommerce.sb_ecom.mapper.CartMapper;
 import com.ecommerce.sb_ecom.model.Cart;
-import com.ecommerce.sb_ecom.model.CartItem;
 import com.ecommerce.sb_ecom.model.Product;
 import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.CartResponse;
 import com.ecommerce.sb_ecom.payload.ProductDTO;
-import com.ecommerce.sb_ecom.repository.CartItemRepository;
 import com.ecommerce.sb_ecom.repository.CartRepository;
+import com.ecommerce.sb_ecom.repository.CartWriteRepository.CartItemRow;
+import com.ecommerce.sb_ecom.repository.CartWriteRepository.CartRow;
 import com.ecommerce.sb_ecom.repository.ProductRepository;
 import com.ecommerce.sb_ecom.util.AuthUtil;
-import jakarta.transaction.Transactional;
-import org.modelmapper.ModelMapper;
+import com.ecommerce.sb_ecom.util.JsonArrayStream;
+import com.ecommerce.sb_ecom.util.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Timed("app.service")
 public class CartServiceImpl implements CartService {
 
     @Autowired
@@ -29,168 +47,143 @@ public class CartServiceImpl implements CartService {
     private ProductRepository productRepository;
 
     @Autowired
-    private CartItemRepository cartItemRepository;
+    private CartMapper cartMapper;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private AuthUtil authUtil;
 
     @Autowired
-    private AuthUtil authUtil;
+    private CartStore cartStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${project.export.fetchSize}")
+    private int exportFetchSize;
+
+    // add/update/remove only change the cart in CartStore, it writes them to the DB in the background
     @Override
     public CartDTO addProductToCart(Long productId, Integer quantity) {
-        Cart cart = createCart();
+        String emailId = authUtil.loggedInEmail();
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
 
-        CartItem cartItem = cartItemRepository.findCartItemByProductIdAndCartId(cart.getId(), productId);
-
-        if (product.getQuantity() == 0) {
-            throw new APIException(product.getName() + " is not available");
-        }
-
-        if (cartItem != null) {
-            throw new APIException("Product " + product.getName() + " already exists in the cart");
-        }
-
-        if (product.getQuantity() < quantity) {
-            throw new APIException("Please, make an order of the " + product.getName()
-                    + " less than or equal to the quantity " + product.getQuantity() + ".");
-        }
-
-        CartItem newCartItem = new CartItem();
-
-        newCartItem.setProduct(product);
-        newCartItem.setCart(cart);
-        newCartItem.setQuantity(quantity);
-        newCartItem.setPrice(product.getPrice());
+        CartRow cart = cartStore.update(emailId, () -> loadOrCreateCart(emailId), userCart -> {
+            if (product.getQuantity() == 0) {
+                throw new APIException(product.getName() + " is not available");
+            }
 
-        cartItemRepository.save(newCartItem);
+            if (userCart.item(productId) != null) {
+                throw new APIException("Product " + product.getName() + " already exists in the cart");
+            }
 
-        cart.setTotalPrice(cart.getTotalPrice() + (product.getPrice() * quantity));
-        cart.getCartItems().add(newCartItem);
+            if (product.getQuantity() < quantity) {
+                throw new APIException("Please, make an order of the " + product.getName()
+                        + " less than or equal to the quantity " + product.getQuantity() + ".");
+            }
 
-        cartRepository.save(cart);
-
-        CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-
-        List<CartItem> cartItems = cart.getCartItems();
-
-        Stream<ProductDTO> productStream = cartItems.stream().map(item -> {
-            ProductDTO map = modelMapper.map(item.getProduct(), ProductDTO.class);
-            map.setQuantity(item.getQuantity());
-            return map;
+            userCart.put(productId, quantity, Money.toCents(product.getPrice()));
         });
 
-        cartDTO.setProducts(productStream.toList());
-
-        return cartDTO;
+        return toDTO(cart);
     }
 
     @Override
-    public List<CartDTO> getAllCarts() {
-        List<Cart> carts = cartRepository.findAll();
-
-        if (carts.isEmpty()) {
+    public CartResponse getAllCarts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+        cartStore.flushAll();
+        Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
+                ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+        Pageable pageDetails = PageRequest.of(pageNumber, pageSize, sortByAndOrder);
+        Page<Long> cartIdPage = cartRepository.findCartIds(pageDetails);
+        if (cartIdPage.isEmpty()) {
             throw new APIException("No cart exists");
         }
 
-        List<CartDTO> cartDTOs = carts.stream().map(cart -> {
-            CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-
-            List<ProductDTO> products = cart.getCartItems().stream().map(cartItem -> {
-                ProductDTO productDTO = modelMapper.map(cartItem.getProduct(), ProductDTO.class);
-                productDTO.setQuantity(cartItem.getQuantity()); // Set the quantity from CartItem
-                return productDTO;
-            }).toList();
-
-            cartDTO.setProducts(products);
-
-            return cartDTO;
-
-        }).toList();
+        // items and products of the page in one select, then back into the order of the page
+        Map<Long, Cart> cartsById = cartRepository.findWithItemsByIdIn(cartIdPage.getContent()).stream()
+                .collect(Collectors.toMap(Cart::getId, Function.identity()));
+        List<CartDTO> cartDTOS = cartIdPage.getContent().stream()
+                .map(cartsById::get)
+                .filter(Objects::nonNull)
+                .map(cart -> cartMapper.toDTO(cart))
+                .toList();
+
+        CartResponse cartResponse = new CartResponse();
+        cartResponse.setContent(cartDTOS);
+        cartResponse.setPageNumber(cartIdPage.getNumber());
+        cartResponse.setPageSize(cartIdPage.getSize());
+        cartResponse.setTotalElements(cartIdPage.getTotalElements());
+        cartResponse.setTotalPages(cartIdPage.getTotalPages());
+        cartResponse.setLastPage(cartIdPage.isLast());
+        return cartResponse;
+    }
 
-        return cartDTOs;
+    // every cart as one JSON array, written while the rows are read
+    @Override
+    public void streamAllCarts(OutputStream out) throws IOException {
+        // the flush writes, so it runs before the read-only transaction of the cursor
+        cartStore.flushAll();
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        JsonArrayStream jsonArray = JsonArrayStream.start(objectMapper, out);
+        readOnlyTransaction.executeWithoutResult(status -> cartRepository.streamCarts(exportFetchSize, jsonArray::write));
+        jsonArray.end();
     }
 
     @Override
     public CartDTO getCart(String email, Long cartId) {
-        Cart cart = cartRepository.findCartByEmailAndId(email, cartId);
-        if(cart == null) {
+        CartRow cart = cartStore.get(email, () -> cartRepository.findCartByEmail(email));
+        if(cart == null || !cart.cartId().equals(cartId)) {
             throw new ResourceNotFoundException("Cart", "id", cartId);
         }
-        CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-        List<CartItem> cartItems = cart.getCartItems();
-
-        Stream<ProductDTO> productStream = cartItems.stream().map(item -> {
-            ProductDTO map = modelMapper.map(item.getProduct(), ProductDTO.class);
-            map.setQuantity(item.getQuantity());
-            return map;
-        });
-
-        cartDTO.setProducts(productStream.toList());
-
-        return cartDTO;
+        return toDTO(cart);
     }
 
-    @Transactional
     @Override
     public CartDTO updateProductQuantityInCart(Long productId, Integer quantity) {
 
         String emailId = authUtil.loggedInEmail();
-        Cart userCart = cartRepository.findCartByEmail(emailId);
-        Long cartId = userCart.getId();
-
-        Cart cart = cartRepository.findById(cartId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "id", cartId));
 
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
 
-        if (product.getQuantity() == 0) {
-            throw new APIException(product.getName() + " is not available");
-        }
-
-        if (product.getQuantity() < quantity) {
-            throw new APIException("Please, make an order of the " + product.getName()
-                    + " less than or equal to the quantity " + product.getQuantity() + ".");
-        }
+        CartRow cart = cartStore.update(emailId, () -> cartRepository.findCartByEmail(emailId), userCart -> {
+            if (product.getQuantity() == 0) {
+                throw new APIException(product.getName() + " is not available");
+            }
 
-        CartItem cartItem = cartItemRepository.findCartItemByProductIdAndCartId(cartId, productId);
+            if (product.getQuantity() < quantity) {
+                throw new APIException("Please, make an order of the " + product.getName()
+                        + " less than or equal to the quantity " + product.getQuantity() + ".");
+            }
 
-        if (cartItem == null) {
-            throw new APIException("Product " + product.getName() + " not available in the cart!!!");
-        }
+            CartItemRow cartItem = userCart.item(productId);
 
-        int newQuantity = cartItem.getQuantity() + quantity;
+            if (cartItem == null) {
+                throw new APIException("Product " + product.getName() + " not available in the cart!!!");
+            }
 
-        if (newQuantity < 0) {
-            throw new APIException("The resulting quantity cannot be negative.");
-        }
+            int newQuantity = cartItem.quantity() + quantity;
 
-        if (newQuantity == 0) {
-            deleteProductFromCart(cartId, productId);
-        } else {
-            cartItem.setPrice(product.getPrice());
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            cartItemRepository.save(cartItem);
-            cart.setTotalPrice(cart.getTotalPrice() + (cartItem.getPrice() * quantity));
-            cartRepository.save(cart);
-        }
+            if (newQuantity < 0) {
+                throw new APIException("The resulting quantity cannot be negative.");
+            }
 
-        CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
-
-        List<CartItem> cartItems = cart.getCartItems();
-
-        Stream<ProductDTO> productStream = cartItems.stream().map(item -> {
-            ProductDTO prd = modelMapper.map(item.getProduct(), ProductDTO.class);
-            prd.setQuantity(item.getQuantity());
-            return prd;
+            if (newQuantity == 0) {
+                userCart.remove(productId);
+            } else {
+                userCart.put(productId, newQuantity, Money.toCents(product.getPrice()));
+            }
         });
+        if (cart == null) {
+            throw new ResourceNotFoundException("Cart", "email", emailId);
+        }
 
-        cartDTO.setProducts(productStream.toList());
-
-        return cartDTO;
+        return toDTO(cart);
     }
 
     // Your custom query likely joins Cart with CartItem and ensures Hibernate recognizes the relationship.
@@ -224,21 +217,18 @@ public class CartServiceImpl implements CartService {
     // it means that cartItems is not properly initialized when using findById(cartId).
     // This strongly suggests that Hibernate is returning a proxy or detached entity, even with EAGER fetch.
 
-    @Transactional
     @Override
     public String deleteProductFromCart(Long cartId, Long productId) {
-        Cart cart = cartRepository.findById(cartId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "id", cartId));
-        CartItem cartItem = cartItemRepository.findCartItemByProductIdAndCartId(cartId, productId);
-        if (cartItem == null) {
-            throw new ResourceNotFoundException("Product", "id", productId);
+        String email = cartStore.emailOf(cartId);
+        if (email == null) {
+            throw new ResourceNotFoundException("Cart", "id", cartId);
         }
-//        String productName = cartItem.getProduct().getName();
-        cart.setTotalPrice(cart.getTotalPrice() -
-                (cartItem.getPrice() * cartItem.getQuantity()));
-
-        cart.getCartItems().remove(cartItem);
-        cartRepository.save(cart);
+        cartStore.update(email, () -> cartRepository.findCartByEmail(email), cart -> {
+            if (cart.item(productId) == null) {
+                throw new ResourceNotFoundException("Product", "id", productId);
+            }
+            cart.remove(productId);
+        });
 
         // this code alone also works because of the comments above -- tells hibernate about the relationships due to the JOIN FETCH
         // cartItemRepository.deleteCartItemByProductIdAndCartId(cartId, productId);
@@ -254,36 +244,33 @@ public class CartServiceImpl implements CartService {
         return "Product removed from the cart !!!";
     }
 
-    @Override
-    public void updateProductInCarts(Long cartId, Long productId) {
-        Cart cart = cartRepository.findById(cartId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart", "id", cartId));
-
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-
-        CartItem cartItem = cartItemRepository.findCartItemByProductIdAndCartId(cartId, productId);
-
-        if (cartItem == null) {
-            throw new APIException("Product " + product.getName() + " not available in the cart!!!");
-        }
-
-        double cartPrice = cart.getTotalPrice() - (cartItem.getPrice() * cartItem.getQuantity());
-        cartItem.setPrice(product.getPrice());
-        cart.setTotalPrice(cartPrice + (cartItem.getPrice() * cartItem.getQuantity()));
-
-        cartItemRepository.save(cartItem);
-    }
-
-    private Cart createCart() {
-        Cart userCart = cartRepository.findCartByEmail(authUtil.loggedInEmail());
+    // runs under the cart lock of the user, two first adds of the same user cannot both create a cart
+    private Cart loadOrCreateCart(String emailId) {
+        Cart userCart = cartRepository.findCartByEmail(emailId);
         if(userCart != null) {
             return userCart;
         }
 
         Cart cart = new Cart();
-        cart.setTotalPrice(0.0);
         cart.setUser(authUtil.loggedInUser());
         return cartRepository.save(cart);
     }
+
+    // products are read fresh (one query), with the quantity that is in the cart
+    private CartDTO toDTO(CartRow cart) {
+        List<ProductDTO> products = new ArrayList<>(cart.items().size());
+        if (!cart.items().isEmpty()) {
+            Map<Long, ProductDTO> productsById = productRepository.findProductDTOsByIdIn(
+                            cart.items().stream().map(CartItemRow::productId).toList()).stream()
+                    .collect(Collectors.toMap(ProductDTO::getId, Function.identity()));
+            for (CartItemRow item : cart.items()) {
+                ProductDTO productDTO = productsById.get(item.productId());
+                if (productDTO != null) {
+                    productDTO.setQuantity(item.quantity());
+                    products.add(productDTO);
+                }
+            }
+        }
+        return new CartDTO(cart.cartId(), Money.toAmount(cart.totalPriceCents()), products);
+    }
 }
@@ -0,0 +1,395 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.Cart;
+import com.ecommerce.sb_ecom.repository.CartRepository;
+import com.ecommerce.sb_ecom.repository.CartWriteRepository.CartItemRow;
+import com.ecommerce.sb_ecom.repository.CartWriteRepository.CartRow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// write-behind store for the carts: add/update/remove change the cart in memory only,
+// the changed carts are written to cart/cart_item in batches by a scheduled flush,
+// and a cart is flushed synchronously before checkout reads it from the DB
+// every cart is guarded by one of a fixed set of locks (picked by the email), so different users never wait on each other
+@Component
+public class CartStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartStore.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${project.cartStore.flushBatchSize}")
+    private int flushBatchSize;
+
+    @Value("${project.cartStore.idleSeconds}")
+    private long idleSeconds;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final Map<String, CartState> carts = new ConcurrentHashMap<>();
+    private final Map<Long, String> emailsByCartId = new ConcurrentHashMap<>();
+    private final Set<String> dirtyEmails = ConcurrentHashMap.newKeySet();
+
+    // one flush at a time, so an older state of a cart can never be written after a newer one:
+    // a flush takes its snapshots and the row locks of those carts (writeCarts) under it, the commit may follow later,
+    // a later snapshot of the same cart waits for that commit on the row lock
+    // the batch flushes hold it until their transaction completes, so flushAll can wait for the carts they took
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public CartStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // current state of the user's cart, loader is used if the cart is not in memory yet (may return null)
+    public CartRow get(String email, Supplier<Cart> loader) {
+        ReentrantLock lock = lockFor(email);
+        lock.lock();
+        try {
+            CartState state = state(email, loader);
+            return state == null ? null : state.snapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // runs the change on the user's cart in memory, exceptions thrown by the change (before it modifies the cart) leave it untouched
+    public CartRow update(String email, Supplier<Cart> loader, Consumer<CartState> change) {
+        ReentrantLock lock = lockFor(email);
+        lock.lock();
+        try {
+            CartState state = state(email, loader);
+            if (state == null) {
+                return null;
+            }
+            try {
+                change.accept(state);
+            } finally {
+                if (state.dirty) {
+                    dirtyEmails.add(email);
+                }
+            }
+            return state.snapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // email of the cart owner, from memory or the DB
+    public String emailOf(Long cartId) {
+        String email = emailsByCartId.get(cartId);
+        return email != null ? email : cartRepository.findEmailByCartId(cartId);
+    }
+
+    // price change of a product: carts in memory are re-priced here, the DB copy is handled by the caller
+    public void applyPriceChange(Long productId, long priceCents) {
+        forEachCartContaining(productId, state -> state.put(productId, state.item(productId).quantity(), priceCents));
+    }
+
+    // product deleted: drop it from the carts in memory, otherwise the next flush would insert it again
+    public void removeProductEverywhere(Long productId) {
+        forEachCartContaining(productId, state -> state.remove(productId));
+    }
+
+    // checkout emptied the cart in the DB: the ordered products leave the cart in memory when that transaction commits
+    // (products added since checkout read the cart are kept), if the commit fails after all the next access reloads the cart
+    public void checkedOut(String email, Collection<Long> productIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update(email, () -> null, state -> productIds.forEach(state::remove));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean removed;
+
+            // still under the cart row lock, before a waiting checkout of the same cart can read it
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                update(email, () -> null, state -> productIds.forEach(state::remove));
+                removed = true;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (removed && status != STATUS_COMMITTED) {
+                    evict(email);
+                }
+            }
+        });
+    }
+
+    // the cart in memory no longer matches the DB, the next access reloads it
+    public void evict(String email) {
+        ReentrantLock lock = lockFor(email);
+        lock.lock();
+        try {
+            CartState state = carts.remove(email);
+            dirtyEmails.remove(email);
+            if (state != null) {
+                emailsByCartId.remove(state.cartId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // synchronous flush of one cart, joins the surrounding transaction (checkout) if there is one:
+    // a cart that cannot be written fails that transaction right away, and stays dirty
+    public void flush(String email) {
+        // every flush takes its connection before the flush lock, a flush waiting for the lock holds one already
+        // and the holder of the lock must never wait for the pool
+        transactionTemplate.executeWithoutResult(status -> {
+            flushLock.lock();
+            try {
+                if (dirtyEmails.remove(email)) {
+                    List<CartRow> snapshots = snapshots(List.of(email));
+                    markDirtyOnRollback(snapshots);
+                    cartRepository.writeCarts(snapshots);
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        });
+    }
+
+    // the carts dirty when it is called: under load carts keep getting dirty, the set itself may never be empty
+    // (a cart a checkout flushed is in the DB once that checkout commits)
+    public void flushAll() {
+        List<String> emails = new ArrayList<>(dirtyEmails);
+        for (int from = 0; from < emails.size(); from += flushBatchSize) {
+            flushBatch(emails.subList(from, Math.min(from + flushBatchSize, emails.size())));
+        }
+        // a scheduled flush may have taken some of them out of the dirty set before the copy, wait for its commit
+        flushLock.lock();
+        flushLock.unlock();
+    }
+
+    @Scheduled(fixedDelayString = "${project.cartStore.flushIntervalMs}")
+    public void flushDirty() {
+        List<String> emails = new ArrayList<>();
+        Iterator<String> iterator = dirtyEmails.iterator();
+        while (iterator.hasNext() && emails.size() < flushBatchSize) {
+            emails.add(iterator.next());
+        }
+        flushBatch(emails);
+        evictIdle();
+    }
+
+    // writes those of the given carts that are still dirty (another flush may have written them meanwhile)
+    private void flushBatch(List<String> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            flushLock.lock();
+            List<CartRow> snapshots = new ArrayList<>();
+            // released when the transaction completes
+            markDirtyOnRollback(snapshots, flushLock::unlock);
+            snapshots.addAll(snapshots(emails.stream().filter(dirtyEmails::remove).toList()));
+            if (!snapshots.isEmpty()) {
+                write(snapshots);
+            }
+        });
+    }
+
+    private List<CartRow> snapshots(List<String> emails) {
+        List<CartRow> snapshots = new ArrayList<>(emails.size());
+        for (String email : emails) {
+            ReentrantLock lock = lockFor(email);
+            lock.lock();
+            try {
+                CartState state = carts.get(email);
+                if (state != null) {
+                    state.dirty = false;
+                    snapshots.add(state.snapshot());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return snapshots;
+    }
+
+    // scheduled flush: each attempt in a savepoint of the flush transaction, on the connection it already holds
+    private void write(List<CartRow> snapshots) {
+        try {
+            cartRepository.writeCartsInSavepoint(snapshots);
+        } catch (RuntimeException e) {
+            if (snapshots.size() > 1) {
+                // write the carts one by one, so one bad cart does not hold back the others
+                snapshots.forEach(snapshot -> write(List.of(snapshot)));
+                return;
+            }
+            // a single cart that cannot be written (e.g. its product is gone): drop it, the next access reloads it from the DB
+            logger.error("Cannot write cart {}, dropping its unsaved changes", snapshots.get(0).cartId(), e);
+            String email = emailsByCartId.get(snapshots.get(0).cartId());
+            if (email != null) {
+                evict(email);
+            }
+        }
+    }
+
+    // if the flush transaction rolls back the carts are not in the DB after all
+    private void markDirtyOnRollback(List<CartRow> snapshots) {
+        markDirtyOnRollback(snapshots, () -> {
+        });
+    }
+
+    private void markDirtyOnRollback(List<CartRow> snapshots, Runnable afterCompletion) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status != STATUS_COMMITTED) {
+                        snapshots.forEach(snapshot -> markDirty(snapshot.cartId()));
+                    }
+                } finally {
+                    afterCompletion.run();
+                }
+            }
+        });
+    }
+
+    private void markDirty(Long cartId) {
+        String email = emailsByCartId.get(cartId);
+        if (email == null) {
+            return;
+        }
+        ReentrantLock lock = lockFor(email);
+        lock.lock();
+        try {
+            CartState state = carts.get(email);
+            if (state != null) {
+                state.dirty = true;
+                dirtyEmails.add(email);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // clean carts nobody touched for a while are dropped from memory
+    private void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleSeconds * 1000;
+        for (String email : carts.keySet()) {
+            ReentrantLock lock = lockFor(email);
+            lock.lock();
+            try {
+                CartState state = carts.get(email);
+                if (state != null && !state.dirty && state.lastAccess < idleSince) {
+                    carts.remove(email);
+                    emailsByCartId.remove(state.cartId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void forEachCartContaining(Long productId, Consumer<CartState> change) {
+        for (String email : carts.keySet()) {
+            ReentrantLock lock = lockFor(email);
+            lock.lock();
+            try {
+                CartState state = carts.get(email);
+                if (state != null && state.item(productId) != null) {
+                    change.accept(state);
+                    dirtyEmails.add(email);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // caller holds the lock of the email
+    private CartState state(String email, Supplier<Cart> loader) {
+        CartState state = carts.get(email);
+        if (state == null) {
+            Cart cart = loader.get();
+            if (cart == null) {
+                return null;
+            }
+            state = CartState.of(cart);
+            carts.put(email, state);
+            emailsByCartId.put(state.cartId, email);
+        }
+        state.lastAccess = System.currentTimeMillis();
+        return state;
+    }
+
+    private ReentrantLock lockFor(String email) {
+        return locks[Math.floorMod(email.hashCode(), LOCK_STRIPES)];
+    }
+
+    // in-memory cart, only touched while holding the lock of its email
+    public static final class CartState {
+        private final Long cartId;
+        private final LinkedHashMap<Long, CartItemRow> items = new LinkedHashMap<>();
+        private long totalPriceCents;
+        private boolean dirty;
+        private long lastAccess;
+
+        private CartState(Long cartId) {
+            this.cartId = cartId;
+        }
+
+        private static CartState of(Cart cart) {
+            CartState state = new CartState(cart.getId());
+            cart.getCartItems().forEach(item -> state.items.put(item.getProduct().getId(),
+                    new CartItemRow(item.getProduct().getId(), item.getQuantity(), item.getPriceCents())));
+            state.totalPriceCents = cart.getTotalPriceCents();
+            return state;
+        }
+
+        public Long getCartId() {
+            return cartId;
+        }
+
+        public CartItemRow item(Long productId) {
+            return items.get(productId);
+        }
+
+        // the total moves by the difference of the old and the new line, exact in cents
+        public void put(Long productId, int quantity, long priceCents) {
+            CartItemRow old = items.put(productId, new CartItemRow(productId, quantity, priceCents));
+            totalPriceCents += priceCents * quantity - lineTotal(old);
+            dirty = true;
+        }
+
+        public void remove(Long productId) {
+            CartItemRow old = items.remove(productId);
+            if (old != null) {
+                totalPriceCents -= lineTotal(old);
+                dirty = true;
+            }
+        }
+
+        private static long lineTotal(CartItemRow item) {
+            return item == null ? 0 : item.priceCents() * item.quantity();
+        }
+
+        private CartRow snapshot() {
+            return new CartRow(cartId, totalPriceCents, List.copyOf(items.values()));
+        }
+    }
+}
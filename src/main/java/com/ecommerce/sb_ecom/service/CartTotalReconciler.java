@@ -0,0 +1,81 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// cart totals are maintained by increments, this checks them against the sum of the items in the background
+// bounded work per run: a few batches of carts (by id), each batch in its own short transaction
+@Component
+public class CartTotalReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartTotalReconciler.class);
+
+    private final CartRepository cartRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter corrections;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    // one run at a time (lock, not synchronized: no pinned carrier while the batches run on a virtual thread)
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    // last cart id checked, the next run continues after it (0 = start over)
+    private long lastCartId;
+
+    public CartTotalReconciler(CartRepository cartRepository,
+                               TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${project.cartReconciler.batchSize}") int batchSize,
+                               @Value("${project.cartReconciler.maxBatchesPerRun}") int maxBatchesPerRun) {
+        this.cartRepository = cartRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.corrections = Counter.builder("cart.total.drift.corrections")
+                .description("Cart totals that differed from the sum of their items and were repaired")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${project.cartReconciler.intervalMs}", initialDelayString = "${project.cartReconciler.intervalMs}")
+    public int reconcile() {
+        runLock.lock();
+        try {
+            int repaired = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<Long> cartIds = cartRepository.findIdsAfter(lastCartId, PageRequest.of(0, batchSize));
+                if (cartIds.isEmpty()) {
+                    lastCartId = 0;
+                    break;
+                }
+                Long fromId = cartIds.get(0);
+                Long toId = cartIds.get(cartIds.size() - 1);
+                Integer count = transactionTemplate.execute(status -> cartRepository.repairTotalsBetween(fromId, toId));
+                repaired += count == null ? 0 : count;
+                lastCartId = toId;
+                if (cartIds.size() < batchSize) {
+                    // reached the last cart
+                    lastCartId = 0;
+                    break;
+                }
+            }
+            if (repaired > 0) {
+                corrections.increment(repaired);
+                logger.warn("Repaired the total of {} carts", repaired);
+            }
+            return repaired;
+        } finally {
+            runLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.payload.CategoryResponse;
+import com.ecommerce.sb_ecom.payload.ProductResponse;
+import com.ecommerce.sb_ecom.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// read-through cache of the finished public catalog pages (ProductResponse / CategoryResponse)
+// bounded by size and TTL, hit/miss/eviction counters are published as cache.* metrics on /actuator/metrics
+// the admin write paths evict only the listings they can affect, the TTL covers stock changes made by orders
+@Component
+public class CatalogCache {
+
+    private final Cache<CatalogKey, ProductResponse> products;
+    private final Cache<CatalogKey, CategoryResponse> categories;
+
+    public CatalogCache(MeterRegistry meterRegistry,
+                        @Value("${project.catalogCache.maxSize}") long maxSize,
+                        @Value("${project.catalogCache.ttlSeconds}") long ttlSeconds) {
+        products = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        categories = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "catalog.products");
+        CaffeineCacheMetrics.monitor(meterRegistry, categories, "catalog.categories");
+    }
+
+    // exceptions thrown by the loader (e.g. empty category) are not cached
+    public ProductResponse getProducts(CatalogKey key, Supplier<ProductResponse> loader) {
+        return products.get(key, k -> loader.get());
+    }
+
+    public CategoryResponse getCategories(CatalogKey key, Supplier<CategoryResponse> loader) {
+        return categories.get(key, k -> loader.get());
+    }
+
+    // a product was added/updated/deleted: all-products pages, pages of its category
+    // and keyword pages whose keyword matches the product text (old or new) can change
+    // (evictions run after commit, otherwise a concurrent read could cache the pre-commit state again)
+    public void evictProductListings(Long categoryId, String... productTexts) {
+        Set<String> productTokens = ProductSearchIndex.tokenize(String.join(" ", nonNull(productTexts)));
+        TransactionUtil.runAfterCommit(() -> products.asMap().keySet().removeIf(key -> switch (key.listing()) {
+            case ALL_PRODUCTS -> true;
+            case CATEGORY_PRODUCTS -> categoryId == null || categoryId.equals(key.categoryId());
+            case KEYWORD_PRODUCTS -> matches(key.keyword(), productTokens);
+            default -> false;
+        }));
+    }
+
+    // a whole category went away (its products are cascaded)
+    public void evictCategory(Long categoryId) {
+        TransactionUtil.runAfterCommit(() -> products.asMap().keySet().removeIf(key -> key.listing() != Listing.CATEGORY_PRODUCTS
+                || categoryId.equals(key.categoryId())));
+        evictCategoryListings();
+    }
+
+    public void evictCategoryListings() {
+        TransactionUtil.runAfterCommit(categories::invalidateAll);
+    }
+
+    // same semantics as the keyword search: every keyword token is a prefix of some product token
+    private static boolean matches(String keyword, Set<String> productTokens) {
+        Set<String> keywordTokens = ProductSearchIndex.tokenize(keyword);
+        return !keywordTokens.isEmpty() && keywordTokens.stream()
+                .allMatch(keywordToken -> productTokens.stream().anyMatch(token -> token.startsWith(keywordToken)));
+    }
+
+    private static String[] nonNull(String[] texts) {
+        String[] result = new String[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            result[i] = texts[i] == null ? "" : texts[i];
+        }
+        return result;
+    }
+
+    public enum Listing {
+        ALL_PRODUCTS,
+        CATEGORY_PRODUCTS,
+        KEYWORD_PRODUCTS,
+        CATEGORIES
+    }
+
+    public record CatalogKey(Listing listing, Long categoryId, String keyword,
+                             Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+
+        public static CatalogKey allProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+            return new CatalogKey(Listing.ALL_PRODUCTS, null, null, pageNumber, pageSize, sortBy, sortOrder.toLowerCase());
+        }
+
+        public static CatalogKey categoryProducts(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+            return new CatalogKey(Listing.CATEGORY_PRODUCTS, categoryId, null, pageNumber, pageSize, sortBy, sortOrder.toLowerCase());
+        }
+
+        public static CatalogKey keywordProducts(String keyword, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+            return new CatalogKey(Listing.KEYWORD_PRODUCTS, null, keyword.toLowerCase(), pageNumber, pageSize, sortBy, sortOrder.toLowerCase());
+        }
+
+        public static CatalogKey categories(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+            return new CatalogKey(Listing.CATEGORIES, null, null, pageNumber, pageSize, sortBy, sortOrder.toLowerCase());
+        }
+    }
+}
@@ -2,31 +2,49 @@ package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.exception.APIException;
 import com.ecommerce.sb_ecom.exception.ResourceNotFoundException;
+import com.ecommerce.sb_ecom.mapper.CategoryMapper;
 import com.ecommerce.sb_ecom.model.Category;
+import com.ecommerce.sb_ecom.model.Product;
 import com.ecommerce.sb_ecom.payload.CategoryDTO;
 import com.ecommerce.sb_ecom.payload.CategoryResponse;
 import com.ecommerce.sb_ecom.repository.CategoryRepository;
-import org.modelmapper.ModelMapper;
+import com.ecommerce.sb_ecom.util.KeysetCursor;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
 @Service
+@Timed("app.service")
 public class CategoryServiceImpl implements CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
-    // we can autowire this anywhere as we have converted it into a bean
     @Autowired
-    private ModelMapper modelMapper;
+    private CategoryMapper categoryMapper;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private CatalogCache catalogCache;
 
     @Override
     public CategoryResponse getAllCategories(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+        return catalogCache.getCategories(CatalogCache.CatalogKey.categories(pageNumber, pageSize, sortBy, sortOrder),
+                () -> loadAllCategories(pageNumber, pageSize, sortBy, sortOrder));
+    }
+
+    private CategoryResponse loadAllCategories(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
         Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
                 ? Sort.by(sortBy).ascending()
                 : Sort.by(sortBy).descending();
@@ -37,7 +55,7 @@ public class CategoryServiceImpl implements CategoryService {
             throw new APIException("No category created till now.");
         }
         List<CategoryDTO> categoryDTOS = categories.stream()
-                .map(category -> modelMapper.map(category, CategoryDTO.class))
+                .map(category -> categoryMapper.toDTO(category))
                 .toList();
         CategoryResponse categoryResponse = new CategoryResponse();
         categoryResponse.setContent(categoryDTOS);
@@ -49,32 +67,67 @@ public class CategoryServiceImpl implements CategoryService {
         return categoryResponse;
     }
 
+    @Override
+    public CategoryResponse getAllCategoriesByCursor(String cursor, Integer pageSize, String sortBy, String sortOrder) {
+        KeysetCursor.checkSortable(Category.class, sortBy);
+        Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
+                ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+        boolean firstPage = cursor == null || cursor.isBlank();
+        ScrollPosition position = firstPage
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(KeysetCursor.decode(cursor, Category.class, sortBy, sortOrder));
+        Window<Category> categoryWindow = categoryRepository.findAllBy(position, sortByAndOrder, Limit.of(pageSize));
+        List<Category> categories = categoryWindow.getContent();
+        if(firstPage && categories.isEmpty()) {
+            throw new APIException("No category created till now.");
+        }
+        List<CategoryDTO> categoryDTOS = categories.stream()
+                .map(category -> categoryMapper.toDTO(category))
+                .toList();
+        CategoryResponse categoryResponse = new CategoryResponse();
+        categoryResponse.setContent(categoryDTOS);
+        categoryResponse.setPageSize(pageSize);
+        categoryResponse.setLastPage(!categoryWindow.hasNext());
+        if(categoryWindow.hasNext()) {
+            KeysetScrollPosition last = (KeysetScrollPosition) categoryWindow.positionAt(categoryWindow.size() - 1);
+            categoryResponse.setNextCursor(KeysetCursor.encode(sortBy, sortOrder, last.getKeys()));
+        }
+        return categoryResponse;
+    }
+
     @Override
     public CategoryDTO createCategory(CategoryDTO categoryDTO) {
-        Category category = modelMapper.map(categoryDTO, Category.class);
+        Category category = categoryMapper.toEntity(categoryDTO);
         Category savedCategory = categoryRepository.findByName(category.getName());
         if(savedCategory != null) {
             throw new APIException("Category with name: " + category.getName() + " already exists!");
         }
         savedCategory = categoryRepository.save(category);
-        return modelMapper.map(savedCategory, CategoryDTO.class);
+        catalogCache.evictCategoryListings();
+        return categoryMapper.toDTO(savedCategory);
     }
 
     @Override
     public CategoryDTO deleteCategory(Long categoryId) {
         Category savedCategory = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", categoryId));
+        // products of the category are removed by the cascade, so drop them from the search index too
+        List<Long> productIds = savedCategory.getProducts().stream().map(Product::getId).toList();
         categoryRepository.delete(savedCategory);
-        return modelMapper.map(savedCategory, CategoryDTO.class);
+        productIds.forEach(productSearchIndex::remove);
+        catalogCache.evictCategory(categoryId);
+        return categoryMapper.toDTO(savedCategory);
     }
 
     @Override
     public CategoryDTO updateCategory(CategoryDTO categoryDTO, Long categoryId) {
         Category savedCategory = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", categoryId));
-        Category category = modelMapper.map(categoryDTO, Category.class);
+        Category category = categoryMapper.toEntity(categoryDTO);
         savedCategory.setName(category.getName());
         savedCategory = categoryRepository.save(savedCategory);
-        return modelMapper.map(savedCategory, CategoryDTO.class);
+        catalogCache.evictCategoryListings();
+        return categoryMapper.toDTO(savedCategory);
     }
 }
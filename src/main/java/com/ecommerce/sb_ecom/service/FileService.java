@@ -3,7 +3,13 @@ package com.ecommerce.sb_ecom.service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.Collection;
 
 public interface FileService {
     String uploadImage(String path, MultipartFile file) throws IOException;
+
+    // products pointing at an uploaded image, join the caller's transaction (other image names are ignored)
+    void addReference(String image);
+
+    void removeReferences(Collection<String> images);
 }
@@ -1,28 +1,165 @@
 package com.ecommerce.sb_ecom.service;
 
+import com.ecommerce.sb_ecom.exception.APIException;
+import com.ecommerce.sb_ecom.repository.ImageBlobRepository;
+import com.ecommerce.sb_ecom.util.ImageFiles;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.UUID;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+// the container spools the multipart body to a temp file as it arrives (file-size-threshold=0) and refuses parts over
+// spring.servlet.multipart.max-file-size, so an upload is never held in memory. the spooled part is read once, for the
+// image format (magic bytes, not the client's file name or content type) and the sha-256 of the content
+// images are content addressed (see ImageFiles): the same picture uploaded again is only a touch of its image_blob row,
+// nothing is written. new content is moved into place (a rename when on the same file system) and registered
+// image_blob.ref_count follows Product.image, ImageGarbageCollector removes what nothing references anymore
 @Service
 public class FileServiceImpl implements FileService {
 
+    private static final int SNIFF_LENGTH = 12;
+
+    private final ImageBlobRepository imageBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxBytes;
+    private final Counter deduplicated;
+
+    public FileServiceImpl(ImageBlobRepository imageBlobRepository,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${project.upload.maxBytes}") long maxBytes) {
+        this.imageBlobRepository = imageBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxBytes = maxBytes;
+        this.deduplicated = Counter.builder("image.uploads.deduplicated")
+                .description("Uploads of content that was already stored, nothing written")
+                .register(meterRegistry);
+    }
+
     @Override
     public String uploadImage(String path, MultipartFile file) throws IOException {
-        String originalFileName = file.getOriginalFilename();
-        String randomId = UUID.randomUUID().toString();
-        String fileName = randomId.concat(originalFileName.substring(originalFileName.lastIndexOf('.')));
-        String filePath = path + File.separator + fileName;
-        File folder = new File(path);
-        if(!folder.exists()) {
-            folder.mkdir();
-        }
-        Files.copy(file.getInputStream(), Paths.get(filePath));
+        if (file.isEmpty()) {
+            throw new APIException("Image file is empty");
+        }
+        if (file.getSize() > maxBytes) {
+            throw new APIException("Image must not be larger than " + maxBytes + " bytes");
+        }
+        MessageDigest digest = sha256();
+        String extension;
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            extension = imageExtension(in.readNBytes(SNIFF_LENGTH));
+            if (extension == null) {
+                throw new APIException("Only JPEG, PNG, GIF and WebP images can be uploaded");
+            }
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String fileName = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+        Path target = ImageFiles.resolve(path, fileName);
+
+        Instant now = Instant.now();
+        Integer touched = transactionTemplate.execute(status -> imageBlobRepository.touch(fileName, now));
+        boolean registered = touched != null && touched > 0;
+        if (registered && Files.exists(target)) {
+            deduplicated.increment();
+            return fileName;
+        }
+
+        // written next to the target and renamed, a reader never sees a partial file
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "upload-", ".tmp");
+        try {
+            // absolute: a relative path would be taken relative to the container's multipart location
+            file.transferTo(temp.toAbsolutePath().toFile());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (!registered) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> imageBlobRepository.insertBlob(fileName, file.getSize(), now));
+            } catch (DataIntegrityViolationException e) {
+                // a concurrent upload of the same content registered it first
+                transactionTemplate.executeWithoutResult(status -> imageBlobRepository.touch(fileName, now));
+            }
+        }
         return fileName;
     }
+
+    @Override
+    public void addReference(String image) {
+        if (!ImageFiles.isContentAddressed(image)) {
+            return;
+        }
+        if (imageBlobRepository.addReference(image) == 0) {
+            // uploaded but left unused past the grace period, collected meanwhile
+            throw new APIException("Image is no longer stored, upload it again");
+        }
+    }
+
+    @Override
+    public void removeReferences(Collection<String> images) {
+        Map<String, Long> counts = images.stream()
+                .filter(Objects::nonNull)
+                .filter(ImageFiles::isContentAddressed)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        Instant now = Instant.now();
+        counts.forEach((image, count) -> imageBlobRepository.removeReferences(image, count.intValue(), now));
+    }
+
+    // extension of the image format the magic bytes stand for, null when not a supported image
+    static String imageExtension(byte[] head) {
+        if (startsWith(head, 0, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        }
+        if (startsWith(head, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "png";
+        }
+        if (startsWith(head, 0, 'G', 'I', 'F', '8')) {
+            return "gif";
+        }
+        if (startsWith(head, 0, 'R', 'I', 'F', 'F') && startsWith(head, 8, 'W', 'E', 'B', 'P')) {
+            return "webp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int... expected) {
+        if (bytes.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((bytes[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,209 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.exception.APIException;
+import com.ecommerce.sb_ecom.exception.ConflictException;
+import com.ecommerce.sb_ecom.model.IdempotencyRecord;
+import com.ecommerce.sb_ecom.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// idempotency keys for retried POSTs: the first attempt with a key runs the action, every retry gets its stored result
+// - completed results sit in memory (caffeine, TTL) in front of the idempotency_record table
+// - a retry arriving while the first attempt still runs on this node waits for it instead of running again
+// - on other nodes the IN_PROGRESS row turns it away with 409, until the lease of a crashed attempt runs out
+// the action runs in the same transaction that marks the row COMPLETED, so a result is stored exactly when its effects are;
+// that update needs the claim's owner token, a slow attempt whose claim was taken over rolls back instead of completing too
+// a failed attempt leaves nothing behind, the key can be used again
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lease;
+
+    private final Cache<String, StoredResult> results;
+    private final Map<String, CompletableFuture<StoredResult>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository,
+                            TransactionTemplate transactionTemplate,
+                            ObjectMapper objectMapper,
+                            @Value("${project.idempotency.cacheSize}") long cacheSize,
+                            @Value("${project.idempotency.ttlSeconds}") long ttlSeconds,
+                            @Value("${project.idempotency.leaseSeconds}") long leaseSeconds) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.results = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // scope keeps the keys of different users apart, requestHash identifies what the key is used for
+    // must not be called inside a transaction, the claim has to be committed before the action runs
+    public <T> T execute(String scope, String key, String requestHash, Class<T> resultType, Supplier<T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new APIException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String recordKey = scope + "|" + key;
+
+        StoredResult cached = results.getIfPresent(recordKey);
+        if (cached != null) {
+            return replay(cached, requestHash, resultType);
+        }
+
+        CompletableFuture<StoredResult> attempt = new CompletableFuture<>();
+        CompletableFuture<StoredResult> running = inFlight.putIfAbsent(recordKey, attempt);
+        if (running != null) {
+            return replay(await(running), requestHash, resultType);
+        }
+        try {
+            String owner = UUID.randomUUID().toString();
+            StoredResult stored = claim(recordKey, requestHash, owner);
+            if (stored != null) {
+                attempt.complete(stored);
+                return replay(stored, requestHash, resultType);
+            }
+            Result<T> result = run(recordKey, requestHash, owner, action);
+            attempt.complete(result.stored());
+            return result.value();
+        } catch (RuntimeException e) {
+            attempt.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(recordKey, attempt);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${project.idempotency.purgeIntervalMs}")
+    public void purgeExpired() {
+        Integer purged = transactionTemplate.execute(status -> idempotencyRecordRepository.deleteExpired(Instant.now()));
+        if (purged != null && purged > 0) {
+            logger.debug("Purged {} expired idempotency records", purged);
+        }
+    }
+
+    // null = this attempt owns the key now (as owner), otherwise the result of the attempt that completed before
+    private StoredResult claim(String recordKey, String requestHash, String owner) {
+        Instant now = Instant.now();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    idempotencyRecordRepository.insertClaim(recordKey, requestHash, owner, now.plus(lease), now.plus(ttl)));
+            return null;
+        } catch (DataIntegrityViolationException e) {
+            // the key is known, the failed insert ended its transaction so the row is read in a new one
+        }
+
+        IdempotencyRecord existing = transactionTemplate.execute(status ->
+                idempotencyRecordRepository.findById(recordKey).orElse(null));
+        if (existing == null) {
+            throw new ConflictException("Request with this Idempotency-Key is being processed, retry later");
+        }
+        if (!existing.getRequestHash().equals(requestHash)) {
+            throw new APIException("Idempotency-Key was already used for a different request");
+        }
+        if (IdempotencyRecord.COMPLETED.equals(existing.getStatus())) {
+            StoredResult stored = new StoredResult(existing.getRequestHash(), existing.getResponseBody());
+            results.put(recordKey, stored);
+            return stored;
+        }
+        Integer takenOver = transactionTemplate.execute(status ->
+                idempotencyRecordRepository.takeOverStaleClaim(recordKey, owner, now.plus(lease), now));
+        if (takenOver == null || takenOver == 0) {
+            throw new ConflictException("Request with this Idempotency-Key is being processed, retry later");
+        }
+        logger.warn("Took over the abandoned idempotency claim {}", recordKey);
+        return null;
+    }
+
+    private <T> Result<T> run(String recordKey, String requestHash, String owner, Supplier<T> action) {
+        Result<T> result;
+        try {
+            result = transactionTemplate.execute(status -> {
+                T value = action.get();
+                String responseBody = toJson(value);
+                if (idempotencyRecordRepository.complete(recordKey, owner, responseBody, Instant.now().plus(ttl)) == 0) {
+                    // this attempt outlived its lease and another one took the key over: undo the action
+                    throw new ConflictException("Request with this Idempotency-Key is being processed, retry later");
+                }
+                return new Result<>(value, new StoredResult(requestHash, responseBody));
+            });
+        } catch (RuntimeException e) {
+            // rolled back, nothing happened: free the key for the next attempt (if it is still ours)
+            transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.release(recordKey, owner));
+            throw e;
+        }
+        results.put(recordKey, result.stored());
+        return result;
+    }
+
+    // waits for the attempt running on this node, it fails the same way if that one failed
+    private StoredResult await(CompletableFuture<StoredResult> running) {
+        try {
+            return running.get(lease.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("Request with this Idempotency-Key is being processed, retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Request with this Idempotency-Key is being processed, retry later");
+        }
+    }
+
+    private <T> T replay(StoredResult stored, String requestHash, Class<T> resultType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new APIException("Idempotency-Key was already used for a different request");
+        }
+        try {
+            return objectMapper.readValue(stored.responseBody(), resultType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response cannot be read", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Idempotent response cannot be stored", e);
+        }
+    }
+
+    private record StoredResult(String requestHash, String responseBody) {
+    }
+
+    private record Result<T>(T value, StoredResult stored) {
+    }
+}
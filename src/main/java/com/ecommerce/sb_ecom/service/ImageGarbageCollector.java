@@ -0,0 +1,107 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.repository.ImageBlobRepository;
+import com.ecommerce.sb_ecom.util.ImageFiles;
+import com.ecommerce.sb_ecom.util.ImageRenditions;
+import com.ecommerce.sb_ecom.util.ImageRenditions.Rendition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// removes the stored images no product references anymore, once they have been idle for the grace period
+// (an upload is referenced only after it was stored, the grace period covers that gap)
+// per image one short transaction: the row is deleted first and the files while its row lock is held, so an upload
+// of the same content waits for the delete and then stores it again, and one that came first keeps the image
+@Component
+public class ImageGarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageGarbageCollector.class);
+
+    private final ImageBlobRepository imageBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration grace;
+    private final int batchSize;
+    private final Counter collected;
+
+    // lock, not synchronized: no pinned carrier while a run waits on the DB on a virtual thread
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    @Value("${project.image}")
+    private String path;
+
+    public ImageGarbageCollector(ImageBlobRepository imageBlobRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${project.imageGc.graceMinutes}") long graceMinutes,
+                                 @Value("${project.imageGc.batchSize}") int batchSize) {
+        this.imageBlobRepository = imageBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.grace = Duration.ofMinutes(graceMinutes);
+        this.batchSize = batchSize;
+        this.collected = Counter.builder("image.blobs.collected")
+                .description("Stored images removed because no product referenced them")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${project.imageGc.intervalMs}", initialDelayString = "${project.imageGc.intervalMs}")
+    public int collect() {
+        return collectIdleBefore(Instant.now().minus(grace));
+    }
+
+    // returns the number of images removed
+    public int collectIdleBefore(Instant cutoff) {
+        runLock.lock();
+        try {
+            int removed = 0;
+            List<String> names;
+            do {
+                names = imageBlobRepository.findUnreferencedIdleBefore(cutoff, PageRequest.of(0, batchSize));
+                for (String name : names) {
+                    if (remove(name, cutoff)) {
+                        removed++;
+                    }
+                }
+            } while (names.size() == batchSize);
+            if (removed > 0) {
+                collected.increment(removed);
+                logger.info("Removed {} unreferenced images", removed);
+            }
+            return removed;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private boolean remove(String name, Instant cutoff) {
+        Boolean removed = transactionTemplate.execute(status -> {
+            if (imageBlobRepository.deleteIfUnreferenced(name, cutoff) == 0) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(ImageFiles.resolve(path, name));
+                for (Rendition rendition : Rendition.values()) {
+                    Files.deleteIfExists(ImageFiles.resolve(path, ImageRenditions.fileName(name, rendition)));
+                }
+            } catch (IOException e) {
+                // rolls the row delete back, tried again on the next run
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(removed);
+    }
+}
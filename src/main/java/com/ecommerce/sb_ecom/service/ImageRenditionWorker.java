@@ -0,0 +1,167 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.util.ImageFiles;
+import com.ecommerce.sb_ecom.util.ImageRenditions;
+import com.ecommerce.sb_ecom.util.ImageRenditions.Rendition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// generates the thumbnail and medium renditions of an uploaded image in the background
+// decoding and scaling is CPU and memory heavy: a few platform threads of its own and a bounded queue
+// (not the shared @Async executor), an upload arriving while the queue is full gets no renditions
+// and their urls keep serving the original
+@Component
+public class ImageRenditionWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageRenditionWorker.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+    private final Counter generated;
+    private final Counter skipped;
+
+    @Value("${project.image}")
+    private String path;
+
+    public ImageRenditionWorker(MeterRegistry meterRegistry,
+                                @Value("${project.renditions.threads}") int threads,
+                                @Value("${project.renditions.queueCapacity}") int queueCapacity,
+                                @Value("${project.renditions.maxPixels}") long maxPixels) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> new Thread(task, "image-rendition-" + threadCount.incrementAndGet()));
+        this.maxPixels = maxPixels;
+        this.generated = Counter.builder("image.renditions.generated").register(meterRegistry);
+        this.skipped = Counter.builder("image.renditions.skipped")
+                .description("Uploads left without renditions: queue full, unreadable format or too large")
+                .register(meterRegistry);
+    }
+
+    // returns at once with the future of the generation (null when the queue was full)
+    public Future<?> submit(String fileName) {
+        try {
+            return executor.submit(() -> generate(fileName));
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+            logger.warn("Image rendition queue is full, no renditions for {}", fileName);
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void generate(String fileName) {
+        // the same content uploaded again already has them
+        boolean generatedBefore = true;
+        for (Rendition rendition : Rendition.values()) {
+            generatedBefore &= Files.exists(ImageFiles.resolve(path, ImageRenditions.fileName(fileName, rendition)));
+        }
+        if (generatedBefore) {
+            return;
+        }
+        try {
+            BufferedImage source = read(ImageFiles.resolve(path, fileName));
+            if (source == null) {
+                skipped.increment();
+                return;
+            }
+            String format = fileName.substring(fileName.lastIndexOf('.') + 1);
+            for (Rendition rendition : Rendition.values()) {
+                write(scale(source, rendition.maxSize(), format), format,
+                        ImageFiles.resolve(path, ImageRenditions.fileName(fileName, rendition)));
+                generated.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            skipped.increment();
+            logger.warn("Could not generate the renditions of {}", fileName, e);
+        }
+    }
+
+    // decodes at most about twice the largest rendition (subsampling while reading), null when ImageIO cannot read it
+    private BufferedImage read(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                logger.debug("No renditions for {}, format not readable", file.getFileName());
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    logger.warn("No renditions for {}, {}x{} is too large", file.getFileName(), width, height);
+                    return null;
+                }
+                int largest = Rendition.MEDIUM.maxSize();
+                int step = Math.max(1, Math.max(width, height) / (2 * largest));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, int maxSize, String format) {
+        double factor = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        // jpeg has no alpha channel
+        boolean jpeg = format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+        BufferedImage scaled = new BufferedImage(width, height, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    // written to a temp file and moved into place, a half written rendition is never served
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), "rendition-", ".tmp");
+        try {
+            if (!ImageIO.write(image, format, temp.toFile())) {
+                throw new IOException("No ImageIO writer for " + format);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.ecommerce.sb_ecom.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+public interface ImageService {
+    void serveImage(String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException;
+}
@@ -0,0 +1,164 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.exception.ResourceNotFoundException;
+import com.ecommerce.sb_ecom.util.ImageFiles;
+import com.ecommerce.sb_ecom.util.ImageRenditions;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// serves the files of project.image without copying them through the JVM heap:
+// - tomcat sends the file itself (sendfile) when the connector supports it, otherwise FileChannel.transferTo
+// - uploaded images never change under their name (the hash of their content), so the name is the ETag
+//   and they are cached for a year
+// - If-None-Match answers 304, a single Range answers 206 (several ranges get the whole file)
+// - a rendition that does not exist (yet) is answered with its original, revalidated so the rendition replaces it
+@Service
+public class ImageServiceImpl implements ImageService {
+
+    // request attributes of the tomcat sendfile support, the file is sent after the servlet returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // <sha-256>.<ext> as written by FileServiceImpl.uploadImage (earlier uploads <uuid>.<ext>),
+    // and their renditions <name>_<suffix>.<ext>
+    private static final Pattern UPLOADED_NAME = Pattern.compile(
+            "([0-9a-f]{64}|[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})(_thumb|_medium)?\\.[A-Za-z0-9]+");
+    // a plain file name, no separators and not starting with a dot
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+
+    private static final String CACHE_IMMUTABLE =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue();
+    private static final String CACHE_REVALIDATE = CacheControl.noCache().cachePublic().getHeaderValue();
+
+    @Value("${project.image}")
+    private String path;
+
+    @Override
+    public void serveImage(String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = resolve(fileName);
+        BasicFileAttributes attributes = attributesOf(file);
+        boolean standIn = false;
+        if (attributes == null) {
+            String original = ImageRenditions.originalOf(fileName);
+            if (original != null) {
+                file = resolve(original);
+                attributes = attributesOf(file);
+                standIn = true;
+            }
+        }
+        if (attributes == null) {
+            throw new ResourceNotFoundException("Image", "name", fileName);
+        }
+        long length = attributes.size();
+
+        // anything else in the folder (default.png) can be replaced in place, and so can a stand-in original:
+        // validator from size and mtime, revalidated
+        boolean immutable = !standIn && UPLOADED_NAME.matcher(fileName).matches();
+        String etag = immutable
+                ? "\"" + fileName.substring(0, fileName.lastIndexOf('.')) + "\""
+                : "\"" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-" + Long.toHexString(length) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // sets the ETag header, and the 304 when If-None-Match has it
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length;
+        HttpRange range = requestedRange(request, etag);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length) + 1;
+            } catch (IllegalArgumentException e) {
+                start = length;
+            }
+            if (start >= length || start >= end) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod()) || end == start) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+    }
+
+    private Path resolve(String fileName) {
+        if (!SAFE_NAME.matcher(fileName).matches()) {
+            throw new ResourceNotFoundException("Image", "name", fileName);
+        }
+        return ImageFiles.resolve(path, fileName);
+    }
+
+    // null when there is no such regular file
+    private static BasicFileAttributes attributesOf(Path file) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // the single range asked for, null for the whole file (no or unparsable Range, several ranges, stale If-Range)
+    private HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
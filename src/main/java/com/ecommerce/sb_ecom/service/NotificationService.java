@@ -0,0 +1,7 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.payload.OrderPlacedEvent;
+
+public interface NotificationService {
+    void orderConfirmed(OrderPlacedEvent event);
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.payload.OrderPlacedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+// no mail / push integration yet, the confirmation is only logged
+@Service
+public class NotificationServiceImpl implements NotificationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationServiceImpl.class);
+
+    @Override
+    public void orderConfirmed(OrderPlacedEvent event) {
+        logger.info("Order {} confirmed, notifying {}", event.getOrderId(), event.getEmail());
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.Order;
+import com.ecommerce.sb_ecom.payload.OrderPlacedEvent;
+import com.ecommerce.sb_ecom.repository.OrderRepository;
+import com.ecommerce.sb_ecom.util.TransactionUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// asynchronous part of the checkout: confirm the order, notify the user
+// (the cart is emptied by the checkout transaction itself)
+@Component
+public class OrderPlacedHandler implements OutboxEventHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPlacedHandler.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public String eventType() {
+        return OrderPlacedEvent.TYPE;
+    }
+
+    @Override
+    public void handle(String payload) {
+        OrderPlacedEvent event = read(payload);
+        if (orderRepository.updateStatus(event.getOrderId(), Order.ACCEPTED, Order.CONFIRMED) > 0) {
+            TransactionUtil.runAfterCommit(() -> notificationService.orderConfirmed(event));
+        }
+    }
+
+    // the order is paid and its stock reserved, but the user was never told: it needs a manual follow-up
+    @Override
+    public void failed(String payload) {
+        OrderPlacedEvent event = read(payload);
+        if (orderRepository.updateStatus(event.getOrderId(), Order.ACCEPTED, Order.CONFIRMATION_FAILED) > 0) {
+            logger.error("Order {} of {} could not be confirmed, moved to '{}'",
+                    event.getOrderId(), event.getEmail(), Order.CONFIRMATION_FAILED);
+        }
+    }
+
+    private OrderPlacedEvent read(String payload) {
+        try {
+            return objectMapper.readValue(payload, OrderPlacedEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unreadable " + OrderPlacedEvent.TYPE + " payload", e);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.payload.OrderDTO;
+import com.ecommerce.sb_ecom.payload.OrderResponse;
 import jakarta.transaction.Transactional;
 
+import java.time.LocalDate;
+
 public interface OrderService {
     @Transactional
     OrderDTO placeOrder(String emailId, Long addressId, String paymentMethod);
+    OrderResponse getUserOrders(String emailId, String cursor, Integer pageSize);
+    OrderResponse searchOrders(LocalDate from, LocalDate to, String orderStatus, String cursor, Integer pageSize);
 }
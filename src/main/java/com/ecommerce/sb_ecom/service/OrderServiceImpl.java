@@ -2,22 +2,39 @@ package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.exception.APIException;
 import com.ecommerce.sb_ecom.exception.ResourceNotFoundException;
+import com.ecommerce.sb_ecom.mapper.OrderMapper;
 import com.ecommerce.sb_ecom.model.*;
 import com.ecommerce.sb_ecom.payload.AddressDTO;
 import com.ecommerce.sb_ecom.payload.OrderDTO;
 import com.ecommerce.sb_ecom.payload.OrderItemDTO;
+import com.ecommerce.sb_ecom.payload.OrderPlacedEvent;
+import com.ecommerce.sb_ecom.payload.OrderResponse;
 import com.ecommerce.sb_ecom.payload.PaymentDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
 import com.ecommerce.sb_ecom.repository.*;
+import com.ecommerce.sb_ecom.repository.CartWriteRepository.CartRow;
+import com.ecommerce.sb_ecom.util.KeysetCursor;
+import com.ecommerce.sb_ecom.util.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
+@Timed("app.service")
 public class OrderServiceImpl implements OrderService {
 
     @Autowired
@@ -36,21 +53,31 @@ public class OrderServiceImpl implements OrderService {
     PaymentRepository paymentRepository;
 
     @Autowired
-    CartService cartService;
+    OrderMapper orderMapper;
 
     @Autowired
-    ModelMapper modelMapper;
+    ProductRepository productRepository;
 
     @Autowired
-    ProductRepository productRepository;
+    CartStore cartStore;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
 
     @Transactional
     @Override
     public OrderDTO placeOrder(String emailId, Long addressId, String paymentMethod) {
-        Cart cart = cartRepository.findCartByEmail(emailId);
-        if (cart == null) {
+        // the cart is changed in memory (CartStore), write the latest state before reading it
+        // (before the row lock: a flush in progress may be waiting for that row, this one would wait for that flush)
+        cartStore.flush(emailId);
+        // a concurrent checkout of the same cart waits here until this one has emptied the cart
+        if (cartRepository.lockCartIdByEmail(emailId) == null) {
             throw new ResourceNotFoundException("Cart", "email", emailId);
         }
+        Cart cart = cartRepository.findCartByEmail(emailId);
 
         Address address = addressRepository.findById(addressId)
                 .orElseThrow(() -> new ResourceNotFoundException("Address", "id", addressId));
@@ -60,56 +87,155 @@ public class OrderServiceImpl implements OrderService {
             throw new APIException("Cart is empty");
         }
 
+        // checkout runs in a fixed number of statements whatever the size of the cart:
+        // one batched stock reservation, payment + order, one batched order_item insert, one outbox insert, emptying the cart
+
+        // stock first: conditional decrements, a product without enough stock fails the order (and rolls the others back)
+        Map<Long, Integer> quantitiesByProductId = cartItems.stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity, Integer::sum));
+        List<Long> shortProductIds = productRepository.decreaseStock(quantitiesByProductId);
+        if (!shortProductIds.isEmpty()) {
+            String shortProducts = cartItems.stream()
+                    .map(CartItem::getProduct)
+                    .filter(product -> shortProductIds.contains(product.getId()))
+                    .map(Product::getName)
+                    .collect(Collectors.joining(", "));
+            throw new APIException("Not enough stock for: " + shortProducts);
+        }
+
         Order order = new Order();
         order.setEmail(emailId);
         order.setOrderDate(LocalDate.now());
-        order.setTotalAmount(cart.getTotalPrice());
-        order.setOrderStatus("Order Accepted!");
+        order.setTotalAmount(Money.toAmount(cart.getTotalPriceCents()));
+        order.setOrderStatus(Order.ACCEPTED);
         order.setAddress(address);
 
         Payment payment = new Payment(paymentMethod);
         payment.setOrder(order);
-        payment = paymentRepository.save(payment); // this will save the order also due to PERSIST
-
-        order.setPayment(payment);
-        Order savedOrder = orderRepository.save(order);
+        order.setPayment(payment); // set before the insert, no extra update of orders.payment_id
+        paymentRepository.save(payment); // this will save the order also due to PERSIST
+        Order savedOrder = payment.getOrder();
 
         List<OrderItem> orderItems = new ArrayList<>();
         for (CartItem cartItem : cartItems) {
             OrderItem orderItem = new OrderItem();
             orderItem.setProduct(cartItem.getProduct());
             orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setOrderedProductPrice(cartItem.getPrice());
+            orderItem.setOrderedProductPrice(Money.toAmount(cartItem.getPriceCents()));
             orderItem.setOrder(savedOrder);
             orderItems.add(orderItem);
         }
 
         orderItems = orderItemRepository.saveAll(orderItems);
 
-        for (CartItem item : cartItems) {
-            int quantity = item.getQuantity();
-            Product product = item.getProduct();
+        // the status transition and the notification happen after the response (OrderPlacedHandler)
+        List<Long> orderedProductIds = new ArrayList<>(quantitiesByProductId.keySet());
+        OrderPlacedEvent event = new OrderPlacedEvent(savedOrder.getId(), emailId, orderedProductIds);
+        outboxEventRepository.insertPending(OrderPlacedEvent.TYPE, toJson(event), Instant.now());
+
+        // emptied in this transaction, under the lock taken above, so the ordered items can never be ordered twice
+        cartRepository.writeCarts(List.of(new CartRow(cart.getId(), 0, List.of())));
+        cartStore.checkedOut(emailId, orderedProductIds);
+
+        // the stock was decreased in SQL only, the products read with the cart still hold the old quantity:
+        // the response shows it minus the ordered quantity, the entities are left alone (a flush must never write it back)
+        OrderDTO orderDTO = orderMapper.toDTO(savedOrder, orderItems);
+        for (OrderItemDTO item : orderDTO.getOrderItems()) {
+            ProductDTO product = item.getProduct();
+            product.setQuantity(product.getQuantity() - quantitiesByProductId.get(product.getId()));
+        }
+        return orderDTO;
+    }
 
-            // Reduce stock quantity
-            product.setQuantity(product.getQuantity() - quantity);
+    @Override
+    public OrderResponse getUserOrders(String emailId, String cursor, Integer pageSize) {
+        if (pageSize < 1) {
+            throw new APIException("pageSize must be at least 1");
+        }
+        HistoryKey before = HistoryKey.of(cursor);
+        return toOrderResponse(orderRepository.findHistoryByEmail(emailId, before.orderDate(), before.id(),
+                PageRequest.of(0, pageSize + 1)), pageSize);
+    }
 
-            productRepository.save(product);
+    @Override
+    public OrderResponse searchOrders(LocalDate from, LocalDate to, String orderStatus, String cursor, Integer pageSize) {
+        if (from.isAfter(to)) {
+            throw new APIException("from must not be after to");
         }
+        if (pageSize < 1) {
+            throw new APIException("pageSize must be at least 1");
+        }
+        HistoryKey before = HistoryKey.of(cursor);
+        Pageable pageDetails = PageRequest.of(0, pageSize + 1);
+        List<OrderHistoryRow> rows = orderStatus == null || orderStatus.isBlank()
+                ? orderRepository.findHistoryByDateRange(from, to, before.orderDate(), before.id(), pageDetails)
+                : orderRepository.findHistoryByStatusAndDateRange(orderStatus, from, to, before.orderDate(), before.id(), pageDetails);
+        return toOrderResponse(rows, pageSize);
+    }
 
-        // moved it out, because deleting in the above for loop was causing the iterator to get invalidated
-        while(!cartItems.isEmpty()) {
-            cartService.deleteProductFromCart(cart.getId(), cartItems.get(0).getProduct().getId());
+    // one row more than the page is read to know whether there is a next page
+    // two selects per page whatever its size: the orders (with payment and address), then the items of all of them
+    private OrderResponse toOrderResponse(List<OrderHistoryRow> rows, Integer pageSize) {
+        boolean hasNext = rows.size() > pageSize;
+        List<OrderHistoryRow> page = hasNext ? rows.subList(0, pageSize) : rows;
+
+        Map<Long, List<OrderItemDTO>> itemsByOrderId = new HashMap<>();
+        if (!page.isEmpty()) {
+            List<Long> orderIds = page.stream().map(OrderHistoryRow::id).toList();
+            for (OrderItemRow item : orderRepository.findItemRowsByOrderIdIn(orderIds)) {
+                ProductDTO productDTO = new ProductDTO(item.productId(), item.productName(), item.image(),
+                        item.description(), item.productQuantity(), item.price());
+                itemsByOrderId.computeIfAbsent(item.orderId(), orderId -> new ArrayList<>())
+                        .add(new OrderItemDTO(item.id(), productDTO, item.quantity(), item.orderedProductPrice()));
+            }
         }
 
-        OrderDTO orderDTO = modelMapper.map(savedOrder, OrderDTO.class);
-        orderItems.forEach(item -> orderDTO.getOrderItems().add(modelMapper.map(item, OrderItemDTO.class)));
+        List<OrderDTO> orderDTOS = new ArrayList<>(page.size());
+        for (OrderHistoryRow row : page) {
+            PaymentDTO paymentDTO = row.paymentId() == null ? null : new PaymentDTO(row.paymentId(), row.paymentMethod());
+            AddressDTO addressDTO = row.addressId() == null ? null : new AddressDTO(row.addressId(), row.street(),
+                    row.building(), row.city(), row.state(), row.country(), row.pincode());
+            orderDTOS.add(new OrderDTO(row.id(), row.email(), itemsByOrderId.getOrDefault(row.id(), List.of()),
+                    row.orderDate(), paymentDTO, row.totalAmount(), row.orderStatus(), addressDTO));
+        }
 
-        PaymentDTO paymentDTO = modelMapper.map(payment, PaymentDTO.class);
-        orderDTO.setPayment(paymentDTO);
+        OrderResponse orderResponse = new OrderResponse();
+        orderResponse.setContent(orderDTOS);
+        orderResponse.setPageSize(pageSize);
+        orderResponse.setLastPage(!hasNext);
+        if (hasNext) {
+            OrderHistoryRow last = page.get(page.size() - 1);
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put("orderDate", last.orderDate());
+            keys.put("id", last.id());
+            orderResponse.setNextCursor(KeysetCursor.encode(HistoryKey.SORT_BY, HistoryKey.SORT_ORDER, keys));
+        }
+        return orderResponse;
+    }
 
-        AddressDTO addressDTO = modelMapper.map(address, AddressDTO.class);
-        orderDTO.setAddress(addressDTO);
+    // position in the newest-first order history, the first page starts below a date no order can have
+    private record HistoryKey(LocalDate orderDate, Long id) {
+        private static final String SORT_BY = "orderDate";
+        private static final String SORT_ORDER = "desc";
+        private static final HistoryKey FIRST_PAGE = new HistoryKey(LocalDate.of(9999, 12, 31), Long.MAX_VALUE);
+
+        private static HistoryKey of(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return FIRST_PAGE;
+            }
+            Map<String, Object> keys = KeysetCursor.decode(cursor, Order.class, SORT_BY, SORT_ORDER);
+            if (!(keys.get("orderDate") instanceof LocalDate orderDate) || !(keys.get("id") instanceof Long id)) {
+                throw new APIException("Invalid cursor");
+            }
+            return new HistoryKey(orderDate, id);
+        }
+    }
 
-        return orderDTO;
+    private String toJson(OrderPlacedEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Order event cannot be written", e);
+        }
     }
 }
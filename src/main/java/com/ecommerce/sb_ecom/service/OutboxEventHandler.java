@@ -0,0 +1,13 @@
+package com.ecommerce.sb_ecom.service;
+
+// handles one type of outbox event, runs inside the transaction that marks the event done
+// events are delivered at least once, so handling the same event twice must be harmless
+public interface OutboxEventHandler {
+    String eventType();
+    void handle(String payload);
+
+    // the event was given up after the maximum number of attempts, runs in a transaction of its own once the FAILED mark
+    // has committed (not retried: a failure here is only logged)
+    default void failed(String payload) {
+    }
+}
@@ -0,0 +1,174 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.OutboxEvent;
+import com.ecommerce.sb_ecom.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// local outbox relay, no broker: polls the due events and hands each one to the handler of its type
+// one transaction per event, so the handler's changes and the DONE mark commit together
+// a failing event is retried with a growing delay and marked FAILED after maxAttempts
+// queue depth and lag (age of the oldest pending event) are refreshed on every poll and exposed as gauges
+@Component
+public class OutboxPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxPoller.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, OutboxEventHandler> handlers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration keepDone;
+
+    // one poll at a time; a lock instead of synchronized, a virtual thread waiting on the DB in here must not pin its carrier
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter processed;
+    private final Counter failed;
+
+    public OutboxPoller(OutboxEventRepository outboxEventRepository,
+                        TransactionTemplate transactionTemplate,
+                        List<OutboxEventHandler> handlers,
+                        MeterRegistry meterRegistry,
+                        @Value("${project.outbox.batchSize}") int batchSize,
+                        @Value("${project.outbox.maxAttempts}") int maxAttempts,
+                        @Value("${project.outbox.retryDelaySeconds}") long retryDelaySeconds,
+                        @Value("${project.outbox.keepDoneHours}") long keepDoneHours) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.handlers = handlers.stream().collect(Collectors.toMap(OutboxEventHandler::eventType, Function.identity()));
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = Duration.ofSeconds(retryDelaySeconds);
+        this.keepDone = Duration.ofHours(keepDoneHours);
+        Gauge.builder("outbox.queue.depth", queueDepth, AtomicLong::get)
+                .description("Outbox events waiting to be handled")
+                .register(meterRegistry);
+        Gauge.builder("outbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Age of the oldest outbox event waiting to be handled")
+                .register(meterRegistry);
+        this.processed = Counter.builder("outbox.events.processed").register(meterRegistry);
+        this.failed = Counter.builder("outbox.events.failed")
+                .description("Outbox events given up after the maximum number of attempts")
+                .register(meterRegistry);
+    }
+
+    // returns the number of events handled
+    @Scheduled(fixedDelayString = "${project.outbox.pollIntervalMs}", initialDelayString = "${project.outbox.pollIntervalMs}")
+    public int poll() {
+        pollLock.lock();
+        try {
+            int handled = 0;
+            List<Long> dueIds = outboxEventRepository.findDueIds(Instant.now(), PageRequest.of(0, batchSize));
+            for (Long id : dueIds) {
+                if (handle(id)) {
+                    handled++;
+                }
+            }
+            refreshBacklog();
+            return handled;
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    @Scheduled(cron = "${project.outbox.cleanupCron}")
+    public void deleteOldDoneEvents() {
+        transactionTemplate.executeWithoutResult(status ->
+                outboxEventRepository.deleteDoneBefore(Instant.now().minus(keepDone)));
+    }
+
+    private boolean handle(Long id) {
+        try {
+            Boolean handled = transactionTemplate.execute(status -> {
+                // empty: handled meanwhile, or locked by another node right now
+                OutboxEvent event = outboxEventRepository.lockPending(id).orElse(null);
+                if (event == null) {
+                    return false;
+                }
+                OutboxEventHandler handler = handlers.get(event.getEventType());
+                if (handler == null) {
+                    throw new IllegalStateException("No handler for outbox event type " + event.getEventType());
+                }
+                handler.handle(event.getPayload());
+                event.setStatus(OutboxEvent.DONE);
+                event.setProcessedAt(Instant.now());
+                return true;
+            });
+            if (Boolean.TRUE.equals(handled)) {
+                processed.increment();
+                return true;
+            }
+            return false;
+        } catch (RuntimeException e) {
+            recordFailure(id, e);
+            return false;
+        }
+    }
+
+    // the handling transaction rolled back, the attempt is recorded in a new one
+    private void recordFailure(Long id, RuntimeException e) {
+        OutboxEvent givenUp = transactionTemplate.execute(status -> {
+            OutboxEvent event = outboxEventRepository.findById(id).orElse(null);
+            if (event == null) {
+                return null;
+            }
+            int attempts = event.getAttempts() + 1;
+            event.setAttempts(attempts);
+            String error = String.valueOf(e.getMessage());
+            event.setLastError(error.length() > 255 ? error.substring(0, 255) : error);
+            if (attempts >= maxAttempts) {
+                event.setStatus(OutboxEvent.FAILED);
+                failed.increment();
+                logger.error("Outbox event {} ({}) failed {} times, giving up", id, event.getEventType(), attempts, e);
+                return event;
+            }
+            event.setAvailableAt(Instant.now().plus(retryDelay.multipliedBy(attempts)));
+            logger.warn("Outbox event {} ({}) failed, attempt {} of {}", id, event.getEventType(), attempts, maxAttempts, e);
+            return null;
+        });
+        if (givenUp != null) {
+            giveUp(givenUp);
+        }
+    }
+
+    // after the FAILED mark has committed: an error of the handler (or a rollback of its transaction) cannot undo it
+    private void giveUp(OutboxEvent event) {
+        OutboxEventHandler handler = handlers.get(event.getEventType());
+        if (handler == null) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> handler.failed(event.getPayload()));
+        } catch (RuntimeException e) {
+            logger.error("Failure handling of outbox event {} ({}) failed", event.getId(), event.getEventType(), e);
+        }
+    }
+
+    private void refreshBacklog() {
+        queueDepth.set(outboxEventRepository.countPending());
+        Instant oldest = outboxEventRepository.findOldestPendingCreatedAt();
+        lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, Instant.now()).toSeconds()));
+    }
+}
@@ -0,0 +1,8 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.payload.PriceUpdateJobDTO;
+
+public interface PriceUpdateJobService {
+    PriceUpdateJobDTO startPriceUpdate(Long productId, double price);
+    PriceUpdateJobDTO getJob(String jobId);
+}
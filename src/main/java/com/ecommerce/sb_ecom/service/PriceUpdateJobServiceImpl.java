@@ -0,0 +1,54 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.exception.ResourceNotFoundException;
+import com.ecommerce.sb_ecom.payload.PriceUpdateJobDTO;
+import com.ecommerce.sb_ecom.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+// price changes reach the carts in the background: the admin request only registers a job,
+// PriceUpdateWorker re-prices the cart items and cart totals once the product update has committed
+// finished jobs stay queryable for a while, then they are dropped
+@Service
+public class PriceUpdateJobServiceImpl implements PriceUpdateJobService {
+
+    @Autowired
+    private PriceUpdateWorker priceUpdateWorker;
+
+    private final Cache<String, PriceUpdateJobDTO> jobs = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    @Override
+    public PriceUpdateJobDTO startPriceUpdate(Long productId, double price) {
+        PriceUpdateJobDTO job = new PriceUpdateJobDTO(UUID.randomUUID().toString(), productId, price,
+                "QUEUED", 0, 0, Instant.now(), null, null);
+        jobs.put(job.getJobId(), job);
+        TransactionUtil.runAfterCommit(() -> priceUpdateWorker.reprice(job));
+        return copyOf(job);
+    }
+
+    @Override
+    public PriceUpdateJobDTO getJob(String jobId) {
+        PriceUpdateJobDTO job = jobs.getIfPresent(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("PriceUpdateJob", "id", jobId);
+        }
+        return copyOf(job);
+    }
+
+    // the worker keeps updating the job, callers get a copy taken under the job's lock
+    private static PriceUpdateJobDTO copyOf(PriceUpdateJobDTO job) {
+        synchronized (job) {
+            return new PriceUpdateJobDTO(job.getJobId(), job.getProductId(), job.getPrice(), job.getStatus(),
+                    job.getCartItemsUpdated(), job.getCartsUpdated(), job.getSubmittedAt(), job.getFinishedAt(), job.getError());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.payload.PriceUpdateJobDTO;
+import com.ecommerce.sb_ecom.repository.CartItemRepository;
+import com.ecommerce.sb_ecom.repository.CartRepository;
+import com.ecommerce.sb_ecom.repository.ProductRepository;
+import com.ecommerce.sb_ecom.util.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+
+// two statements however many carts hold the product: move the totals of those carts by the price difference, then re-price the cart items
+// jobs of one product can run in any order (two quick price changes), so a job re-prices to the product's current price,
+// not to the one it was queued with: whichever job runs last leaves the latest price behind
+@Component
+public class PriceUpdateWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceUpdateWorker.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    // the jobs of one product run one after the other, including the re-pricing of the carts in memory after the commit
+    // (the product row lock orders the transactions only)
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public PriceUpdateWorker() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Async
+    public void reprice(PriceUpdateJobDTO job) {
+        synchronized (job) {
+            job.setStatus("RUNNING");
+        }
+        ReentrantLock lock = locks[Math.floorMod(job.getProductId().hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            Long priceCents = transactionTemplate.execute(status -> {
+                Double price = productRepository.lockPriceById(job.getProductId());
+                if (price == null) {
+                    // deleted meanwhile, its cart items went with it
+                    return null;
+                }
+                long currentPriceCents = Money.toCents(price);
+                // the increment reads the old item prices, so it goes first
+                int carts = cartRepository.adjustTotalsForPriceChange(job.getProductId(), currentPriceCents);
+                int cartItems = cartItemRepository.updatePriceByProductId(job.getProductId(), currentPriceCents);
+                synchronized (job) {
+                    job.setCartItemsUpdated(cartItems);
+                    job.setCartsUpdated(carts);
+                }
+                return currentPriceCents;
+            });
+            // again once the cart tables have the new price: a cart loaded into memory meanwhile read the old one
+            if (priceCents != null) {
+                cartStore.applyPriceChange(job.getProductId(), priceCents);
+            }
+            synchronized (job) {
+                job.setStatus("DONE");
+                job.setFinishedAt(Instant.now());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Price update job {} for product {} failed", job.getJobId(), job.getProductId(), e);
+            synchronized (job) {
+                job.setStatus("FAILED");
+                job.setError(e.getMessage());
+                job.setFinishedAt(Instant.now());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.exception.APIException;
+import com.ecommerce.sb_ecom.model.Product;
+import com.ecommerce.sb_ecom.repository.ProductRepository;
+import com.ecommerce.sb_ecom.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// in-memory inverted index over product name + description
+// a LIKE '%keyword%' cannot use a B-tree index, so every keyword search used to seq-scan the product table (plus a COUNT)
+// here every token points to a sorted list of product ids, and we also keep the few fields we need for sorting,
+// so matching, counting, sorting and paging all happen in memory and the DB is only asked for the ids on the page
+// (not the stock: checkout changes it in SQL only, a copy here would go stale, so search results cannot be sorted by quantity)
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // TreeMap so that a query token can be matched as a prefix (subMap) -> "phone" finds "phones"
+    private final TreeMap<String, LongPostingList> postings = new TreeMap<>();
+
+    private final Map<Long, IndexedProduct> documents = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            int pageNumber = 0;
+            Page<Product> page;
+            do {
+                page = productRepository.findAll(PageRequest.of(pageNumber++, REBUILD_BATCH_SIZE, Sort.by("id")));
+                page.getContent().forEach(product -> addDocument(IndexedProduct.of(product)));
+            } while (page.hasNext());
+            logger.info("Product search index built with {} products and {} tokens", documents.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // called by the write paths, applied only once the surrounding transaction (if any) commits
+    public void index(Product product) {
+        IndexedProduct document = IndexedProduct.of(product);
+        TransactionUtil.runAfterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeDocument(document.id());
+                addDocument(document);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(Long productId) {
+        TransactionUtil.runAfterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeDocument(productId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public SearchResult search(String keyword, int pageNumber, int pageSize, String sortBy, String sortOrder) {
+        Comparator<IndexedProduct> comparator = comparator(sortBy);
+        if (!sortOrder.equalsIgnoreCase("asc")) {
+            comparator = comparator.reversed();
+        }
+        comparator = comparator.thenComparingLong(IndexedProduct::id);
+
+        IndexedProduct[] matches;
+        lock.readLock().lock();
+        try {
+            long[] ids = match(tokenize(keyword));
+            matches = new IndexedProduct[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                matches[i] = documents.get(ids[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Arrays.sort(matches, comparator);
+        int from = (int) Math.min((long) pageNumber * pageSize, matches.length);
+        int to = Math.min(from + pageSize, matches.length);
+        long[] pageIds = new long[to - from];
+        for (int i = from; i < to; i++) {
+            pageIds[i - from] = matches[i].id();
+        }
+        return new SearchResult(pageIds, matches.length);
+    }
+
+    // every query token has to match (AND), a query token matches any indexed token it is a prefix of (OR)
+    private long[] match(Set<String> queryTokens) {
+        if (queryTokens.isEmpty()) {
+            return new long[0];
+        }
+        long[] result = null;
+        for (String queryToken : queryTokens) {
+            long[] tokenIds = new long[0];
+            for (LongPostingList list : postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false).values()) {
+                tokenIds = LongPostingList.union(tokenIds, list.toArray());
+            }
+            result = result == null ? tokenIds : LongPostingList.intersect(result, tokenIds);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private void addDocument(IndexedProduct document) {
+        documents.put(document.id(), document);
+        for (String token : document.tokens()) {
+            postings.computeIfAbsent(token, t -> new LongPostingList()).add(document.id());
+        }
+    }
+
+    private void removeDocument(Long productId) {
+        IndexedProduct existing = documents.remove(productId);
+        if (existing == null) {
+            return;
+        }
+        for (String token : existing.tokens()) {
+            LongPostingList list = postings.get(token);
+            if (list != null && list.remove(productId) && list.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    private static Comparator<IndexedProduct> comparator(String sortBy) {
+        return switch (sortBy) {
+            case "id" -> Comparator.comparingLong(IndexedProduct::id);
+            case "name" -> Comparator.comparing(IndexedProduct::name, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+            case "description" -> Comparator.comparing(IndexedProduct::description, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+            case "price" -> Comparator.comparingDouble(IndexedProduct::price);
+            default -> throw new APIException("Products cannot be sorted by: " + sortBy);
+        };
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // ids of the requested page (already in sort order) + total number of matches
+    public record SearchResult(long[] ids, long totalElements) {
+    }
+
+    private record IndexedProduct(long id, String name, String description, double price, Set<String> tokens) {
+        static IndexedProduct of(Product product) {
+            Set<String> tokens = tokenize(product.getName());
+            tokens.addAll(tokenize(product.getDescription()));
+            return new IndexedProduct(product.getId(), product.getName(), product.getDescription(),
+                    product.getPrice(), tokens);
+        }
+    }
+
+    // sorted, growable long[] -> no boxing of ids in the postings
+    static final class LongPostingList {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        static long[] union(long[] a, long[] b) {
+            long[] result = new long[a.length + b.length];
+            int i = 0, j = 0, k = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    result[k++] = a[i++];
+                } else if (a[i] > b[j]) {
+                    result[k++] = b[j++];
+                } else {
+                    result[k++] = a[i++];
+                    j++;
+                }
+            }
+            while (i < a.length) {
+                result[k++] = a[i++];
+            }
+            while (j < b.length) {
+                result[k++] = b[j++];
+            }
+            return Arrays.copyOf(result, k);
+        }
+
+        static long[] intersect(long[] a, long[] b) {
+            long[] result = new long[Math.min(a.length, b.length)];
+            int i = 0, j = 0, k = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[k++] = a[i++];
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, k);
+        }
+    }
+}
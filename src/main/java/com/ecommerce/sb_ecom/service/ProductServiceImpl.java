@@ -2,8 +2,7 @@ package com.ecommerce.sb_ecom.service;
 
 import com.ecommerce.sb_ecom.exception.APIException;
 import com.ecommerce.sb_ecom.exception.ResourceNotFoundException;
-import com.ecommerce.sb_ecom.model.Cart;
-import com.ecommerce.sb_ecom.model.CartItem;
+import com.ecommerce.sb_ecom.mapper.ProductMapper;
 import com.ecommerce.sb_ecom.model.Category;
 import com.ecommerce.sb_ecom.model.Product;
 import com.ecommerce.sb_ecom.payload.ProductDTO;
@@ -12,21 +11,36 @@ import com.ecommerce.sb_ecom.repository.CartItemRepository;
 import com.ecommerce.sb_ecom.repository.CartRepository;
 import com.ecommerce.sb_ecom.repository.CategoryRepository;
 import com.ecommerce.sb_ecom.repository.ProductRepository;
+import com.ecommerce.sb_ecom.util.KeysetCursor;
+import com.ecommerce.sb_ecom.util.Money;
+import com.ecommerce.sb_ecom.util.TransactionUtil;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Timed("app.service")
 public class ProductServiceImpl implements ProductService {
 
     @Autowired
@@ -42,14 +56,29 @@ public class ProductServiceImpl implements ProductService {
     private CartItemRepository cartItemRepository;
 
     @Autowired
-    private CartService cartService;
+    private PriceUpdateJobService priceUpdateJobService;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private ProductMapper productMapper;
 
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private ImageRenditionWorker imageRenditionWorker;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Value("${project.image}")
     private String path;
 
@@ -57,20 +86,16 @@ public class ProductServiceImpl implements ProductService {
     public ProductDTO addProduct(Long categoryId, ProductDTO productDTO) {
         Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", categoryId));
-        boolean isProductNotPresent = true;
-        List<Product> products = category.getProducts();
-        for(Product product : products) {
-            if(product.getName().equals(productDTO.getName())) {
-                isProductNotPresent = false;
-                break;
-            }
-        }
+        // exists query instead of loading every product of the category
+        boolean isProductNotPresent = !productRepository.existsByCategoryAndName(category, productDTO.getName());
         if(isProductNotPresent) {
-            Product product = modelMapper.map(productDTO, Product.class);
+            Product product = productMapper.toEntity(productDTO);
             product.setCategory(category);
             product.setImage("default.png");
             Product savedProduct = productRepository.save(product);
-            return modelMapper.map(savedProduct, ProductDTO.class);
+            productSearchIndex.index(savedProduct);
+            catalogCache.evictProductListings(categoryId, savedProduct.getName(), savedProduct.getDescription());
+            return productMapper.toDTO(savedProduct);
         } else {
             throw new APIException("Product already exists!");
         }
@@ -78,17 +103,18 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public ProductResponse getAllProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+        return catalogCache.getProducts(CatalogCache.CatalogKey.allProducts(pageNumber, pageSize, sortBy, sortOrder),
+                () -> loadAllProducts(pageNumber, pageSize, sortBy, sortOrder));
+    }
+
+    private ProductResponse loadAllProducts(Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
         Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
                 ? Sort.by(sortBy).ascending()
                 : Sort.by(sortBy).descending();
         Pageable pageDetails = PageRequest.of(pageNumber, pageSize, sortByAndOrder);
-        Page<Product> pageProducts = productRepository.findAll(pageDetails);
-        List<Product> products = pageProducts.getContent();
-        List<ProductDTO> productDTOS = products.stream()
-                .map(product -> modelMapper.map(product, ProductDTO.class))
-                .toList();
+        Page<ProductDTO> pageProducts = productRepository.findAllProductDTOs(pageDetails);
         ProductResponse productResponse = new ProductResponse();
-        productResponse.setContent(productDTOS);
+        productResponse.setContent(pageProducts.getContent());
         productResponse.setPageNumber(pageProducts.getNumber());
         productResponse.setPageSize(pageProducts.getSize());
         productResponse.setTotalElements(pageProducts.getTotalElements());
@@ -97,24 +123,49 @@ public class ProductServiceImpl implements ProductService {
         return productResponse;
     }
 
+    @Override
+    public ProductResponse getAllProductsByCursor(String cursor, Integer pageSize, String sortBy, String sortOrder) {
+        KeysetCursor.checkSortable(Product.class, sortBy);
+        Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
+                ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+        ScrollPosition position = cursor == null || cursor.isBlank()
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(KeysetCursor.decode(cursor, Product.class, sortBy, sortOrder));
+        Window<Product> windowProducts = productRepository.findAllBy(position, sortByAndOrder, Limit.of(pageSize));
+        List<ProductDTO> productDTOS = windowProducts.getContent().stream()
+                .map(product -> productMapper.toDTO(product))
+                .toList();
+        ProductResponse productResponse = new ProductResponse();
+        productResponse.setContent(productDTOS);
+        productResponse.setPageSize(pageSize);
+        productResponse.setLastPage(!windowProducts.hasNext());
+        if(windowProducts.hasNext()) {
+            KeysetScrollPosition last = (KeysetScrollPosition) windowProducts.positionAt(windowProducts.size() - 1);
+            productResponse.setNextCursor(KeysetCursor.encode(sortBy, sortOrder, last.getKeys()));
+        }
+        return productResponse;
+    }
+
     @Override
     public ProductResponse searchProductsByCategory(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+        return catalogCache.getProducts(CatalogCache.CatalogKey.categoryProducts(categoryId, pageNumber, pageSize, sortBy, sortOrder),
+                () -> loadProductsByCategory(categoryId, pageNumber, pageSize, sortBy, sortOrder));
+    }
+
+    private ProductResponse loadProductsByCategory(Long categoryId, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
         Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", categoryId));
         Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
                 ? Sort.by(sortBy).ascending()
                 : Sort.by(sortBy).descending();
         Pageable pageDetails = PageRequest.of(pageNumber, pageSize, sortByAndOrder);
-        Page<Product> pageProducts = productRepository.findByCategoryOrderByPriceAsc(category, pageDetails);
-        List<Product> products = pageProducts.getContent();
-        if(products.isEmpty()) {
+        Page<ProductDTO> pageProducts = productRepository.findProductDTOsByCategoryId(category.getId(), pageDetails);
+        if(pageProducts.isEmpty()) {
             throw new APIException(category.getName() + " category does not contain any products.");
         }
-        List<ProductDTO> productDTOS = products.stream()
-                .map(product -> modelMapper.map(product, ProductDTO.class))
-                .toList();
         ProductResponse productResponse = new ProductResponse();
-        productResponse.setContent(productDTOS);
+        productResponse.setContent(pageProducts.getContent());
         productResponse.setPageNumber(pageProducts.getNumber());
         productResponse.setPageSize(pageProducts.getSize());
         productResponse.setTotalElements(pageProducts.getTotalElements());
@@ -125,93 +176,135 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public ProductResponse searchProductsByKeyword(String keyword, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
-        Sort sortByAndOrder = sortOrder.equalsIgnoreCase("asc")
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
-        Pageable pageDetails = PageRequest.of(pageNumber, pageSize, sortByAndOrder);
-        Page<Product> pageProducts = productRepository.findByNameLikeIgnoreCase('%' + keyword + '%', pageDetails);
-        List<Product> products = pageProducts.getContent();
-        if(products.isEmpty()) {
+        if (pageNumber < 0) {
+            throw new APIException("pageNumber must not be negative");
+        }
+        if (pageSize < 1) {
+            throw new APIException("pageSize must be at least 1");
+        }
+        return catalogCache.getProducts(CatalogCache.CatalogKey.keywordProducts(keyword, pageNumber, pageSize, sortBy, sortOrder),
+                () -> loadProductsByKeyword(keyword, pageNumber, pageSize, sortBy, sortOrder));
+    }
+
+    private ProductResponse loadProductsByKeyword(String keyword, Integer pageNumber, Integer pageSize, String sortBy, String sortOrder) {
+        // matching, counting, sorting and paging is answered by the in-memory index, the DB only loads the page by id
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(keyword, pageNumber, pageSize, sortBy, sortOrder);
+        long[] ids = result.ids();
+        if(ids.length == 0) {
             throw new APIException("No products found with keyword: " + keyword);
         }
-        List<ProductDTO> productDTOS = products.stream()
-                .map(product -> modelMapper.map(product, ProductDTO.class))
+        List<Long> productIds = Arrays.stream(ids).boxed().toList();
+        Map<Long, ProductDTO> productsById = productRepository.findProductDTOsByIdIn(productIds).stream()
+                .collect(Collectors.toMap(ProductDTO::getId, Function.identity()));
+        List<ProductDTO> productDTOS = productIds.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull) // deleted in between the index lookup and the fetch
                 .toList();
+        int totalPages = (int) ((result.totalElements() + pageSize - 1) / pageSize);
         ProductResponse productResponse = new ProductResponse();
         productResponse.setContent(productDTOS);
-        productResponse.setPageNumber(pageProducts.getNumber());
-        productResponse.setPageSize(pageProducts.getSize());
-        productResponse.setTotalElements(pageProducts.getTotalElements());
-        productResponse.setTotalPages(pageProducts.getTotalPages());
-        productResponse.setLastPage(pageProducts.isLast());
+        productResponse.setPageNumber(pageNumber);
+        productResponse.setPageSize(pageSize);
+        productResponse.setTotalElements(result.totalElements());
+        productResponse.setTotalPages(totalPages);
+        productResponse.setLastPage(pageNumber + 1 >= totalPages);
         return productResponse;
     }
 
+    // transactional so that the price update job only starts once the new price is committed
+    @Transactional
     @Override
     public ProductDTO updateProduct(Long productId, ProductDTO productDTO) {
         Product productFromDb = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-        Product product = modelMapper.map(productDTO, Product.class);
+        Product product = productMapper.toEntity(productDTO);
+        double oldPrice = productFromDb.getPrice();
+        String oldName = productFromDb.getName();
+        String oldDescription = productFromDb.getDescription();
         productFromDb.setName(product.getName());
         productFromDb.setDescription(product.getDescription());
         productFromDb.setQuantity(product.getQuantity());
         productFromDb.setPrice(product.getPrice());
         Product savedProduct = productRepository.save(productFromDb);
-        List<Cart> carts = cartRepository.findCartsByProductId(productId);
-        carts.forEach(cart -> cartService.updateProductInCarts(cart.getId(), productId));
-        return modelMapper.map(savedProduct, ProductDTO.class);
+        productSearchIndex.index(savedProduct);
+        catalogCache.evictProductListings(savedProduct.getCategory() == null ? null : savedProduct.getCategory().getId(),
+                oldName, oldDescription, savedProduct.getName(), savedProduct.getDescription());
+        ProductDTO savedProductDTO = productMapper.toDTO(savedProduct);
+        if (oldPrice != savedProduct.getPrice()) {
+            // carts in memory on commit, the cart tables through a background job (can be many carts)
+            long priceCents = Money.toCents(savedProduct.getPrice());
+            TransactionUtil.runAfterCommit(() -> cartStore.applyPriceChange(productId, priceCents));
+            savedProductDTO.setPriceUpdateJob(priceUpdateJobService.startPriceUpdate(productId, savedProduct.getPrice()));
+        }
+        return savedProductDTO;
     }
 
     @Transactional
     @Override
     public ProductDTO deleteProduct(Long productId) {
-//        Fetching Cart Entities:
-//        When you call cartRepository.findCartsByProductId(productId), it fetches all Cart entities that contain the Product with the given productId.
-//        These Cart entities are loaded into the persistence context, along with their associated CartItem entities.
-//
-//        Deleting CartItem Entities:
-//        In the deleteProductFromCart method, you are deleting the CartItem associated with the Product from the Cart.
-//        However, the Cart entity still holds a reference to the deleted CartItem in its cartItems collection, even though the CartItem is no longer managed by the persistence context.
-//
-//        Deleting the Product:
-//        When you delete the Product entity, JPA tries to cascade the delete operation to the associated CartItem entities.
-//        Since the CartItem entities were already deleted in the deleteProductFromCart method, they are now in a detached or transient state. This causes the transient object exception.
-
-//        Why It Works When You Comment Out the First Two Lines
-//        The Cart and CartItem entities are not loaded into the persistence context.
-//        When you delete the Product, JPA cascades the delete operation to the associated CartItem entities without any conflicts, as there are no detached or transient entities in the persistence context.
-
-        List<Cart> carts = cartRepository.findCartsByProductId(productId);
-        // TODO below line is commented due to the TODO in CartServiceImpl deleteProductFromCart
-//        carts.forEach(cart -> cartService.deleteProductFromCart(cart.getId(), productId));
-
-//        To fix this issue, you need to ensure that the CartItem entities are properly removed from the Cart entities and the persistence context is updated accordingly. Here's how you can modify your code:
-//        Why This Works:
-//        By explicitly removing the CartItem from the Cart's cartItems collection and deleting it from the database, you ensure that the CartItem is no longer referenced by any managed entity.
-//        When you delete the Product, JPA does not attempt to cascade the delete operation to the CartItem entities, as they have already been removed and are no longer part of the persistence context.
-        for (Cart cart : carts) {
-            CartItem cartItem = cartItemRepository.findCartItemByProductIdAndCartId(cart.getId(), productId);
-            if (cartItem != null) {
-                cart.setTotalPrice(cart.getTotalPrice() - (cartItem.getPrice() * cartItem.getQuantity()));
-                cart.getCartItems().remove(cartItem);
-                cartRepository.save(cart);
+        return deleteProducts(List.of(productId)).get(0);
+    }
+
+    // loading every cart with the product and saving them one by one (see the notes in CartServiceImpl) is replaced by
+    // set based statements: fix the totals of all affected carts, delete their cart items, delete the products
+    // -> the cascade from Product to CartItem has nothing left to do and the carts never enter the persistence context
+    @Transactional
+    @Override
+    public List<ProductDTO> deleteProducts(List<Long> productIds) {
+        List<Long> ids = productIds.stream().distinct().toList();
+        if (ids.isEmpty()) {
+            throw new APIException("No product ids given");
+        }
+        Map<Long, Product> productsById = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : ids) {
+            if (!productsById.containsKey(productId)) {
+                throw new ResourceNotFoundException("Product", "id", productId);
             }
         }
 
-        Product productFromDb = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-        productRepository.delete(productFromDb);
+        // carts in memory once the deletion is committed, otherwise their next flush would write the products back
+        // (a rollback keeps them; a cart flushed in between fails on the missing product and is reloaded from the DB)
+        TransactionUtil.runAfterCommit(() -> ids.forEach(cartStore::removeProductEverywhere));
+        fileService.removeReferences(productsById.values().stream().map(Product::getImage).toList());
+        cartRepository.subtractProductsFromTotals(ids);
+        cartItemRepository.deleteAllByProductIdIn(ids);
+        productRepository.deleteAllByIdInBatch(ids);
 
-        return modelMapper.map(productFromDb, ProductDTO.class);
+        List<ProductDTO> deleted = new ArrayList<>(ids.size());
+        for (Long productId : ids) {
+            Product productFromDb = productsById.get(productId);
+            productSearchIndex.remove(productId);
+            catalogCache.evictProductListings(productFromDb.getCategory() == null ? null : productFromDb.getCategory().getId(),
+                    productFromDb.getName(), productFromDb.getDescription());
+            deleted.add(productMapper.toDTO(productFromDb));
+        }
+        return deleted;
     }
 
     @Override
     public ProductDTO updateProductImage(Long productId, MultipartFile image) throws IOException {
-        Product productFromDb = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+        // outside the transaction, no connection is held while the file is read; an image stored for a product
+        // that turns out not to exist is never referenced and gets collected
         String fileName = fileService.uploadImage(path, image);
-        productFromDb.setImage(fileName);
-        return modelMapper.map(productRepository.save(productFromDb), ProductDTO.class);
+        // thumbnail and medium are generated in the background, their urls serve the original until then
+        imageRenditionWorker.submit(fileName);
+        Product savedProduct = transactionTemplate.execute(status -> {
+            Product productFromDb = productRepository.findById(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+            String oldImage = productFromDb.getImage();
+            if (!fileName.equals(oldImage)) {
+                fileService.addReference(fileName);
+                if (oldImage != null) {
+                    fileService.removeReferences(List.of(oldImage));
+                }
+                productFromDb.setImage(fileName);
+            }
+            return productRepository.save(productFromDb);
+        });
+        catalogCache.evictProductListings(savedProduct.getCategory() == null ? null : savedProduct.getCategory().getId(),
+                savedProduct.getName(), savedProduct.getDescription());
+        return productMapper.toDTO(savedProduct);
     }
 
 }
@@ -2,11 +2,13 @@ package com.ecommerce.sb_ecom.util;
 
 import com.ecommerce.sb_ecom.model.User;
 import com.ecommerce.sb_ecom.repository.UserRepository;
+import com.ecommerce.sb_ecom.security.services.UserDetailsImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Component
 public class AuthUtil {
@@ -14,24 +16,39 @@ public class AuthUtil {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    private CurrentUserHolder currentUserHolder;
+
+    // email and id are already on the principal set by AuthTokenFilter, the user is only looked up
+    // when the principal is something else (e.g. a plain username)
     public String loggedInEmail() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + authentication.getName()));
-        return user.getEmail();
+        if (authentication.getPrincipal() instanceof UserDetailsImpl userDetails) {
+            return userDetails.getEmail();
+        }
+        return loggedInUser().getEmail();
     }
 
     public Long loggedInUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + authentication.getName()));
-        return user.getId();
+        if (authentication.getPrincipal() instanceof UserDetailsImpl userDetails) {
+            return userDetails.getId();
+        }
+        return loggedInUser().getId();
     }
 
+    // memoized per request, outside of a web request (tests, async work) it is a plain lookup
     public User loggedInUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + authentication.getName()));
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            return findUser(authentication.getName());
+        }
+        return currentUserHolder.get(authentication.getName(), this::findUser);
+    }
+
+    private User findUser(String username) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
         return user;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package com.ecommerce.sb_ecom.util;
+
+import com.ecommerce.sb_ecom.model.User;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.function.Function;
+
+// the logged in User of the current request, loaded at most once however often AuthUtil is asked
+// (open-in-view keeps the same persistence context for the whole request, so the entity stays managed)
+@Component
+@RequestScope
+public class CurrentUserHolder {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String username;
+    private User user;
+    private int lookups;
+
+    public User get(String username, Function<String, User> loader) {
+        if (user == null || !username.equals(this.username)) {
+            user = loader.apply(username);
+            this.username = username;
+            lookups++;
+        }
+        return user;
+    }
+
+    // runs when the request completes, should always record 1 (or 0)
+    @PreDestroy
+    public void recordLookups() {
+        DistributionSummary.builder("auth.user.lookups")
+                .description("users table lookups per request that needed the logged in user")
+                .register(meterRegistry)
+                .record(lookups);
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.sb_ecom.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+// where an image file lives in project.image
+// uploads are stored under the sha-256 of their content (<hash>.<ext>, renditions <hash>_<suffix>.<ext>) and sharded
+// by the first two bytes of the hash, images/ab/cd/abcd...: a few entries per directory even with millions of images
+// older names (uuid uploads, default.png) stay directly in the folder
+public final class ImageFiles {
+
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}(_[a-z]+)?(\\.[A-Za-z0-9]+)?");
+
+    private ImageFiles() {
+    }
+
+    public static boolean isContentAddressed(String fileName) {
+        return fileName != null && CONTENT_ADDRESSED.matcher(fileName).matches();
+    }
+
+    public static Path resolve(String folder, String fileName) {
+        Path root = Paths.get(folder);
+        if (!isContentAddressed(fileName)) {
+            return root.resolve(fileName);
+        }
+        return root.resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4)).resolve(fileName);
+    }
+}
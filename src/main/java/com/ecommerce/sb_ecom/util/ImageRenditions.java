@@ -0,0 +1,63 @@
+package com.ecommerce.sb_ecom.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// scaled down copies of a product image, stored next to it as <name>_<suffix>.<ext> (same format as the original)
+// the names (and urls) follow from the image name alone, so listings never have to look at the disk
+public final class ImageRenditions {
+
+    public enum Rendition {
+        THUMBNAIL("thumb", 200),
+        MEDIUM("medium", 600);
+
+        private final String suffix;
+        private final int maxSize;
+
+        Rendition(String suffix, int maxSize) {
+            this.suffix = suffix;
+            this.maxSize = maxSize;
+        }
+
+        public String suffix() {
+            return suffix;
+        }
+
+        // longest side in pixels
+        public int maxSize() {
+            return maxSize;
+        }
+    }
+
+    public static final String URL_PREFIX = "/images/";
+
+    private static final Pattern RENDITION_NAME = Pattern.compile("(.+)_(thumb|medium)(\\.[A-Za-z0-9]+)?");
+
+    private ImageRenditions() {
+    }
+
+    public static String fileName(String image, Rendition rendition) {
+        int dot = image.lastIndexOf('.');
+        if (dot < 0) {
+            return image + "_" + rendition.suffix();
+        }
+        return image.substring(0, dot) + "_" + rendition.suffix() + image.substring(dot);
+    }
+
+    // the image a rendition was made from, null when the name is not a rendition
+    public static String originalOf(String fileName) {
+        Matcher matcher = RENDITION_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return matcher.group(3) == null ? matcher.group(1) : matcher.group(1) + matcher.group(3);
+    }
+
+    public static String url(String image) {
+        return image == null ? null : URL_PREFIX + image;
+    }
+
+    public static String url(String image, Rendition rendition) {
+        return image == null ? null : URL_PREFIX + fileName(image, rendition);
+    }
+}
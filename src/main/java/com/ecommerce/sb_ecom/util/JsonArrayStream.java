@@ -0,0 +1,39 @@
+package com.ecommerce.sb_ecom.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// writes a JSON array element by element straight to the output, nothing is collected in memory
+// end() is only called after the last element, a failure in between leaves an unterminated array (not a valid but partial one)
+public class JsonArrayStream {
+
+    private final JsonGenerator generator;
+
+    private JsonArrayStream(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    public static JsonArrayStream start(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.writeStartArray();
+        return new JsonArrayStream(generator);
+    }
+
+    // called from JDBC row callbacks, which cannot throw IOException
+    public void write(Object element) {
+        try {
+            generator.writeObject(element);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void end() throws IOException {
+        generator.writeEndArray();
+        generator.flush();
+    }
+}
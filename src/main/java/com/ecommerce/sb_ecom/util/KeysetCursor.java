@@ -0,0 +1,100 @@
+package com.ecommerce.sb_ecom.util;
+
+import com.ecommerce.sb_ecom.exception.APIException;
+import jakarta.persistence.Id;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+// opaque cursor for keyset (seek) pagination
+// it carries the sort it was created for plus the key values of the last row of the page (sortBy value + id),
+// the next page then continues with WHERE (sortBy, id) > (those values) instead of OFFSET, and without a COUNT query
+public class KeysetCursor {
+
+    private static final ConversionService conversionService = ApplicationConversionService.getSharedInstance();
+
+    private KeysetCursor() {
+    }
+
+    // only fields that can never be null can be sorted by: the next page seeks with (sortBy, id) > (value, id),
+    // which a null value never satisfies, and nulls sort first or last depending on the database
+    public static void checkSortable(Class<?> entityClass, String sortBy) {
+        Field field = ReflectionUtils.findField(entityClass, sortBy);
+        if (field == null) {
+            throw new APIException("Unknown sort field: " + sortBy);
+        }
+        boolean nonNull = field.getType().isPrimitive()
+                || field.isAnnotationPresent(Id.class)
+                || field.isAnnotationPresent(NotNull.class)
+                || field.isAnnotationPresent(NotBlank.class);
+        if (!nonNull) {
+            throw new APIException("Cannot page by cursor sorted by " + sortBy + ", it may be empty");
+        }
+    }
+
+    public static String encode(String sortBy, String sortOrder, Map<String, ?> keys) {
+        StringJoiner values = new StringJoiner("&");
+        keys.forEach((key, value) -> {
+            if (value == null) {
+                throw new APIException("Cannot page by cursor sorted by " + key + ", it may be empty");
+            }
+            values.add(urlEncode(key) + "=" + urlEncode(value.toString()));
+        });
+        String raw = sortBy + "|" + sortOrder.toLowerCase() + "|" + values;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // key values are converted back to the type of the matching field of the entity
+    public static Map<String, Object> decode(String cursor, Class<?> entityClass, String sortBy, String sortOrder) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new APIException("Invalid cursor");
+        }
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3) {
+            throw new APIException("Invalid cursor");
+        }
+        if (!parts[0].equals(sortBy) || !parts[1].equals(sortOrder.toLowerCase())) {
+            throw new APIException("Cursor was created for a different sort, start again without a cursor");
+        }
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (String pair : parts[2].split("&")) {
+            String[] keyValue = pair.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new APIException("Invalid cursor");
+            }
+            String key = urlDecode(keyValue[0]);
+            Field field = ReflectionUtils.findField(entityClass, key);
+            if (field == null) {
+                throw new APIException("Invalid cursor");
+            }
+            try {
+                keys.put(key, conversionService.convert(urlDecode(keyValue[1]), field.getType()));
+            } catch (RuntimeException e) {
+                throw new APIException("Invalid cursor");
+            }
+        }
+        return keys;
+    }
+
+    private static String urlEncode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String urlDecode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ecommerce.sb_ecom.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// cart amounts are kept in minor units (cents) as long, so sums and increments are exact
+// the API (and Product.price) still speaks in double amounts, the conversion happens only at the edges
+public class Money {
+
+    private Money() {
+    }
+
+    public static long toCents(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    public static double toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2).doubleValue();
+    }
+}
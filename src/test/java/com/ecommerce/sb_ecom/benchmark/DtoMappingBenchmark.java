@@ -0,0 +1,145 @@
+package com.ecommerce.sb_ecom.benchmark;
+
+import com.ecommerce.sb_ecom.mapper.*;
+import com.ecommerce.sb_ecom.model.*;
+import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.OrderDTO;
+import com.ecommerce.sb_ecom.payload.OrderItemDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.util.Money;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// compares the old reflective ModelMapper path with the hand written mappers on the shapes of our hot paths:
+// a product listing page, a cart view and a placed order
+// run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ecommerce.sb_ecom.benchmark.DtoMappingBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    @Param({"50"})
+    private int pageSize;
+
+    private ModelMapper modelMapper;
+    private ProductMapper productMapper;
+    private CartMapper cartMapper;
+    private OrderMapper orderMapper;
+
+    private List<Product> products;
+    private Cart cart;
+    private Order order;
+    private List<OrderItem> orderItems;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+
+        productMapper = new ProductMapper();
+        cartMapper = new CartMapper();
+        ReflectionTestUtils.setField(cartMapper, "productMapper", productMapper);
+        OrderItemMapper orderItemMapper = new OrderItemMapper();
+        ReflectionTestUtils.setField(orderItemMapper, "productMapper", productMapper);
+        orderMapper = new OrderMapper();
+        ReflectionTestUtils.setField(orderMapper, "orderItemMapper", orderItemMapper);
+        ReflectionTestUtils.setField(orderMapper, "addressMapper", new AddressMapper());
+
+        products = new ArrayList<>();
+        for (long i = 1; i <= pageSize; i++) {
+            Product product = new Product();
+            product.setId(i);
+            product.setName("Product " + i);
+            product.setDescription("Description of product " + i);
+            product.setImage(i + ".png");
+            product.setQuantity((int) i);
+            product.setPrice(10.0 * i);
+            products.add(product);
+        }
+
+        cart = new Cart();
+        cart.setId(1L);
+        for (Product product : products.subList(0, Math.min(10, products.size()))) {
+            CartItem cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(2);
+            cartItem.setPriceCents(Money.toCents(product.getPrice()));
+            cart.getCartItems().add(cartItem);
+            cart.setTotalPriceCents(cart.getTotalPriceCents() + cartItem.getPriceCents() * 2);
+        }
+
+        Address address = new Address(1L, "Some street", "Some building", "City", "State", "Country", "123456", null);
+        Payment payment = new Payment("card");
+        payment.setId(1L);
+        order = new Order();
+        order.setId(1L);
+        order.setEmail("user1@example.com");
+        order.setOrderDate(LocalDate.now());
+        order.setTotalAmount(Money.toAmount(cart.getTotalPriceCents()));
+        order.setOrderStatus("Order Accepted!");
+        order.setAddress(address);
+        order.setPayment(payment);
+        orderItems = new ArrayList<>();
+        for (CartItem cartItem : cart.getCartItems()) {
+            orderItems.add(new OrderItem(null, cartItem.getProduct(), order, cartItem.getQuantity(), Money.toAmount(cartItem.getPriceCents())));
+        }
+    }
+
+    @Benchmark
+    public List<ProductDTO> productPageModelMapper() {
+        return products.stream().map(product -> modelMapper.map(product, ProductDTO.class)).toList();
+    }
+
+    @Benchmark
+    public List<ProductDTO> productPageMapper() {
+        return products.stream().map(product -> productMapper.toDTO(product)).toList();
+    }
+
+    @Benchmark
+    public CartDTO cartModelMapper() {
+        CartDTO cartDTO = modelMapper.map(cart, CartDTO.class);
+        cartDTO.setProducts(cart.getCartItems().stream().map(item -> {
+            ProductDTO productDTO = modelMapper.map(item.getProduct(), ProductDTO.class);
+            productDTO.setQuantity(item.getQuantity());
+            return productDTO;
+        }).toList());
+        return cartDTO;
+    }
+
+    @Benchmark
+    public CartDTO cartMapper() {
+        return cartMapper.toDTO(cart);
+    }
+
+    @Benchmark
+    public OrderDTO orderModelMapper() {
+        OrderDTO orderDTO = modelMapper.map(order, OrderDTO.class);
+        List<OrderItemDTO> orderItemDTOS = new ArrayList<>();
+        orderItems.forEach(item -> orderItemDTOS.add(modelMapper.map(item, OrderItemDTO.class)));
+        orderDTO.setOrderItems(orderItemDTOS);
+        return orderDTO;
+    }
+
+    @Benchmark
+    public OrderDTO orderMapper() {
+        return orderMapper.toDTO(order, orderItems);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DtoMappingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,122 @@
+package com.ecommerce.sb_ecom.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// closed-loop load against a running instance, to compare the platform thread setup with the virtual profile:
+//   1. start the app normally, run this, note the numbers
+//   2. restart it with --spring.profiles.active=virtual (JDK 21), run this again with the same arguments
+// every client signs in once and then loops over a mixed catalog / cart / order history workload
+// the comparison is throughput, p50/p99 latency and how many requests were turned away (503) or failed
+// run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ecommerce.sb_ecom.benchmark.ExecutionProfileLoadComparison -Dexec.args="http://localhost:8080 400 30"
+public class ExecutionProfileLoadComparison {
+
+    private static final List<String> PATHS = List.of(
+            "/api/public/products?pageNumber=0&pageSize=20",
+            "/api/public/categories?pageNumber=0&pageSize=20",
+            "/api/public/products/keyword/a?pageNumber=0&pageSize=20",
+            "/api/carts/users/cart",
+            "/api/users/orders?pageSize=20");
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String username = args.length > 3 ? args[3] : "user1";
+        String password = args.length > 4 ? args[4] : "password1";
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(8))
+                .build();
+        String cookie = signIn(httpClient, baseUrl, username, password);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<ClientResult>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            int offset = i;
+            futures.add(executor.submit(() -> runClient(httpClient, baseUrl, cookie, offset, deadline)));
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        Map<Integer, Integer> statuses = new TreeMap<>();
+        int errors = 0;
+        for (Future<ClientResult> future : futures) {
+            ClientResult result = future.get();
+            latencies.addAll(result.latenciesMicros());
+            result.statuses().forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+            errors += result.errors();
+        }
+        executor.shutdown();
+
+        Collections.sort(latencies);
+        System.out.printf("%s, %d clients, %d s%n", baseUrl, clients, seconds);
+        System.out.printf("requests: %d (%.1f/s), io errors: %d%n", latencies.size(), latencies.size() / (double) seconds, errors);
+        System.out.printf("latency ms: p50 %.1f, p99 %.1f, max %.1f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+        System.out.println("statuses: " + statuses);
+        System.exit(0);
+    }
+
+    private static ClientResult runClient(HttpClient httpClient, String baseUrl, String cookie, int offset, long deadline) {
+        List<Long> latencies = new ArrayList<>();
+        Map<Integer, Integer> statuses = new TreeMap<>();
+        int errors = 0;
+        for (int i = offset; System.nanoTime() < deadline; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + PATHS.get(i % PATHS.size())))
+                    .header("Cookie", cookie)
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                latencies.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                statuses.merge(response.statusCode(), 1, Integer::sum);
+            } catch (Exception e) {
+                errors++;
+            }
+        }
+        return new ClientResult(latencies, statuses, errors);
+    }
+
+    private static String signIn(HttpClient httpClient, String baseUrl, String username, String password) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/signin"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Sign in failed with " + response.statusCode() + ": " + response.body());
+        }
+        // only the name=value part of the Set-Cookie header goes back
+        return response.headers().firstValue("Set-Cookie")
+                .map(header -> header.split(";", 2)[0])
+                .orElseThrow(() -> new IllegalStateException("Sign in returned no cookie"));
+    }
+
+    private static double percentile(List<Long> sortedMicros, double percentile) {
+        if (sortedMicros.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedMicros.size()) - 1;
+        return sortedMicros.get(Math.max(0, index)) / 1000.0;
+    }
+
+    private record ClientResult(List<Long> latenciesMicros, Map<Integer, Integer> statuses, int errors) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.ecommerce.sb_ecom.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.RestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the metrics are scraped on the internal management port only, the app port does not serve them
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "management.server.port=0")
+@AutoConfigureObservability
+@ActiveProfiles("h2")
+class ActuatorExposureTest {
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void prometheusIsOnlyOpenOnTheManagementPort() {
+        assertThat(managementPort).isNotEqualTo(serverPort);
+        assertThat(status(managementPort, "/actuator/prometheus")).isEqualTo(200);
+        assertThat(status(managementPort, "/actuator/metrics")).isEqualTo(401);
+        assertThat(status(serverPort, "/actuator/prometheus")).isIn(401, 404);
+    }
+
+    private static int status(int port, String path) {
+        return RestClient.create("http://localhost:" + port).get().uri(path)
+                .exchange((request, response) -> response.getStatusCode().value());
+    }
+}
@@ -0,0 +1,95 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.User;
+import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.CartItemDTO;
+import com.ecommerce.sb_ecom.payload.CategoryDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.repository.UserRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the streamed admin listings must carry the same carts as the paged ones, including the unflushed cart changes
+@SpringBootTest
+@ActiveProfiles("h2")
+class CartExportTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartItemService cartItemService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void streamedCartsMatchTheCartContents() throws Exception {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "Export check")).getId();
+        Long lamp = addProduct(categoryId, "Export check lamp", 12.5);
+        Long chair = addProduct(categoryId, "Export check chair", 40.0);
+
+        User user = userRepository.save(new User("exporter", "exporter@example.com", "password"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user.getUsername(), null, List.of()));
+        cartService.addProductToCart(lamp, 2);
+        CartDTO cart = cartService.addProductToCart(chair, 1);
+
+        ByteArrayOutputStream carts = new ByteArrayOutputStream();
+        cartService.streamAllCarts(carts);
+        List<CartDTO> streamedCarts = objectMapper.readValue(carts.toByteArray(), new TypeReference<>() {
+        });
+        CartDTO streamedCart = streamedCarts.stream()
+                .filter(streamed -> streamed.getId().equals(cart.getId()))
+                .findFirst().orElseThrow();
+        assertThat(streamedCart.getTotal()).isEqualTo(65.0);
+        assertThat(streamedCart.getProducts()).extracting(ProductDTO::getId).containsExactly(lamp, chair);
+        assertThat(streamedCart.getProducts()).extracting(ProductDTO::getQuantity).containsExactly(2, 1);
+
+        ByteArrayOutputStream cartItems = new ByteArrayOutputStream();
+        cartItemService.streamAllCartItems(cartItems);
+        List<CartItemDTO> streamedItems = objectMapper.readValue(cartItems.toByteArray(), new TypeReference<>() {
+        });
+        assertThat(streamedItems).filteredOn(item -> item.getCartId().equals(cart.getId()))
+                .extracting(item -> item.getProduct().getId())
+                .containsExactly(lamp, chair);
+
+        assertThat(cartService.getAllCarts(0, 1000, "id", "asc").getContent())
+                .extracting(CartDTO::getId).contains(cart.getId());
+    }
+
+    private Long addProduct(Long categoryId, String name, double price) {
+        ProductDTO productDTO = new ProductDTO();
+        productDTO.setName(name);
+        productDTO.setDescription("Product used to check the cart export");
+        productDTO.setQuantity(100);
+        productDTO.setPrice(price);
+        return productService.addProduct(categoryId, productDTO).getId();
+    }
+}
@@ -0,0 +1,91 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.User;
+import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.CategoryDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.repository.CartRepository;
+import com.ecommerce.sb_ecom.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// cart totals are exact cents, and a total that drifted anyway is found and repaired by the reconciler
+@SpringBootTest
+@ActiveProfiles("h2")
+class CartTotalReconcilerTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private CartTotalReconciler cartTotalReconciler;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void totalsAreExactAndDriftIsRepaired() {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "Drift check")).getId();
+        Long cheap = addProduct(categoryId, "Drift check sticker", 0.10);
+        Long cheaper = addProduct(categoryId, "Drift check pin", 0.20);
+
+        User user = userRepository.save(new User("drift", "drift@example.com", "password"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user.getUsername(), null, List.of()));
+        cartService.addProductToCart(cheap, 3);
+        CartDTO cart = cartService.addProductToCart(cheaper, 3);
+        // 0.1 * 3 + 0.2 * 3 in doubles is 0.9000000000000001
+        assertThat(cart.getTotal()).isEqualTo(0.9);
+        cartStore.flushAll();
+
+        jdbcTemplate.update("UPDATE cart SET total_price_cents = 1 WHERE cart_id = ?", cart.getId());
+        double correctionsBefore = meterRegistry.counter("cart.total.drift.corrections").count();
+
+        assertThat(cartTotalReconciler.reconcile()).isGreaterThanOrEqualTo(1);
+        assertThat(cartRepository.findById(cart.getId()).orElseThrow().getTotalPriceCents()).isEqualTo(90);
+        assertThat(meterRegistry.counter("cart.total.drift.corrections").count()).isGreaterThan(correctionsBefore);
+    }
+
+    private Long addProduct(Long categoryId, String name, double price) {
+        ProductDTO productDTO = new ProductDTO();
+        productDTO.setName(name);
+        productDTO.setDescription("Product used to check the cart totals");
+        productDTO.setQuantity(100);
+        productDTO.setPrice(price);
+        return productService.addProduct(categoryId, productDTO).getId();
+    }
+}
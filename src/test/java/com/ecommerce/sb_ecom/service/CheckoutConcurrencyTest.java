@@ -0,0 +1,166 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.exception.APIException;
+import com.ecommerce.sb_ecom.model.Address;
+import com.ecommerce.sb_ecom.model.User;
+import com.ecommerce.sb_ecom.payload.CategoryDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.repository.AddressRepository;
+import com.ecommerce.sb_ecom.repository.OrderRepository;
+import com.ecommerce.sb_ecom.repository.ProductRepository;
+import com.ecommerce.sb_ecom.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// flash sale on one SKU: many buyers check out at the same moment, the stock must never go below zero
+@SpringBootTest
+@ActiveProfiles("h2")
+class CheckoutConcurrencyTest {
+
+    private static final int STOCK = 10;
+    private static final int BUYERS = 40;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "Flash sale")).getId();
+        ProductDTO productDTO = new ProductDTO();
+        productDTO.setName("Flash sale phone");
+        productDTO.setDescription("Only a few in stock");
+        productDTO.setQuantity(STOCK);
+        productDTO.setPrice(199.0);
+        Long productId = productService.addProduct(categoryId, productDTO).getId();
+
+        // every buyer has the product in the cart while there is still stock
+        List<Address> addresses = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            User buyer = userRepository.save(new User("flash" + i, "flash" + i + "@example.com", "password"));
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(buyer.getUsername(), null, List.of()));
+            cartService.addProductToCart(productId, 1);
+            addresses.add(addressRepository.save(
+                    new Address(null, "Flash street", "Building " + i, "Pune", "MH", "India", "411001", buyer)));
+        }
+        SecurityContextHolder.clearContext();
+
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            String email = "flash" + i + "@example.com";
+            Long addressId = addresses.get(i).getId();
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    orderService.placeOrder(email, addressId, "card");
+                    placed.incrementAndGet();
+                } catch (APIException e) {
+                    assertThat(e.getMessage()).contains("Flash sale phone");
+                    outOfStock.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS); // rethrows anything other than the out of stock error
+        }
+        executor.shutdown();
+
+        assertThat(placed.get()).isEqualTo(STOCK);
+        assertThat(outOfStock.get()).isEqualTo(BUYERS - STOCK);
+        assertThat(productRepository.findById(productId).orElseThrow().getQuantity()).isZero();
+    }
+
+    // a double submit of the same cart: the second checkout waits for the first and finds the cart empty
+    @Test
+    void concurrentCheckoutsOfOneCartOrderItOnce() throws Exception {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "Double submit")).getId();
+        ProductDTO productDTO = new ProductDTO();
+        productDTO.setName("Double submit lamp");
+        productDTO.setDescription("Ordered by an impatient buyer");
+        productDTO.setQuantity(STOCK);
+        productDTO.setPrice(25.0);
+        Long productId = productService.addProduct(categoryId, productDTO).getId();
+
+        User buyer = userRepository.save(new User("doubleclick", "doubleclick@example.com", "password"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(buyer.getUsername(), null, List.of()));
+        cartService.addProductToCart(productId, 1);
+        SecurityContextHolder.clearContext();
+        Long addressId = addressRepository.save(
+                new Address(null, "Double street", "Building 1", "Pune", "MH", "India", "411001", buyer)).getId();
+
+        AtomicInteger emptyCart = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    orderService.placeOrder(buyer.getEmail(), addressId, "card");
+                } catch (APIException e) {
+                    assertThat(e.getMessage()).isEqualTo("Cart is empty");
+                    emptyCart.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(emptyCart.get()).isEqualTo(1);
+        assertThat(orderRepository.findAll()).filteredOn(order -> order.getEmail().equals(buyer.getEmail())).hasSize(1);
+        assertThat(productRepository.findById(productId).orElseThrow().getQuantity()).isEqualTo(STOCK - 1);
+    }
+}
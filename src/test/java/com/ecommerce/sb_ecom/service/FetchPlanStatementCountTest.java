@@ -0,0 +1,193 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.Address;
+import com.ecommerce.sb_ecom.model.User;
+import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.CategoryDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.repository.AddressRepository;
+import com.ecommerce.sb_ecom.repository.CartItemRepository;
+import com.ecommerce.sb_ecom.repository.ProductRepository;
+import com.ecommerce.sb_ecom.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// counts the SQL statements each use case runs, so an EAGER association or an N+1 sneaking back in fails here
+@SpringBootTest
+@ActiveProfiles("h2")
+class FetchPlanStatementCountTest {
+
+    private static final int ITEMS_IN_CART = 3;
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Statistics statistics;
+    private Long categoryId;
+    private User buyer;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        int run = sequence.incrementAndGet();
+        categoryId = categoryService.createCategory(new CategoryDTO(null, "FetchPlan category " + run)).getId();
+        List<Long> productIds = new ArrayList<>();
+        for (int i = 0; i < ITEMS_IN_CART; i++) {
+            ProductDTO productDTO = new ProductDTO();
+            productDTO.setName("Fetch plan product " + run + "-" + i);
+            productDTO.setDescription("Product used to count statements");
+            productDTO.setQuantity(100);
+            productDTO.setPrice(10.0 + i);
+            productIds.add(productService.addProduct(categoryId, productDTO).getId());
+        }
+
+        // every product sits in several carts, this is what the old EAGER mappings fanned out to
+        for (int shopper = 0; shopper < 3; shopper++) {
+            authenticateAs(newUser("fps" + run + "x" + shopper));
+            productIds.forEach(productId -> cartService.addProductToCart(productId, 1));
+        }
+
+        buyer = newUser("fpb" + run);
+        authenticateAs(buyer);
+        productIds.forEach(productId -> cartService.addProductToCart(productId, 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void catalogListingRunsPageQueryOnly() {
+        statistics.clear();
+        productService.getAllProducts(0, 7, "id", "asc");
+        // page select + count
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+        // rows are projected straight into ProductDTO
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void categoryListingRunsCategoryAndPageQueryOnly() {
+        statistics.clear();
+        productService.searchProductsByCategory(categoryId, 0, 7, "id", "asc");
+        // category lookup + page select + count
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+        // only the category itself, no products
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+    }
+
+    @Test
+    void cartViewLoadsCartItemsAndProductsInOneSelect() {
+        CartDTO cart = cartService.addProductToCart(productIdNotInCart(), 1);
+
+        statistics.clear();
+        CartDTO cartDTO = cartService.getCart(buyer.getEmail(), cart.getId());
+        assertThat(cartDTO.getProducts()).hasSize(ITEMS_IN_CART + 1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void checkoutRunsConstantNumberOfStatements() {
+        Address address = new Address(null, "Fetch plan street", "Building 42", "Pune", "MH", "India", "411001", buyer);
+        address = addressRepository.save(address);
+        // one more item than the other tests, the count must not depend on the cart size
+        Long extraProductId = productIdNotInCart();
+        cartService.addProductToCart(extraProductId, 2);
+
+        StatementCountingDataSource counter = (StatementCountingDataSource) dataSource;
+        counter.startCounting();
+        orderService.placeOrder(buyer.getEmail(), address.getId(), "card");
+        // counted on the connection, so the JdbcTemplate statements are in: flush of the cart (3 batches) + cart lock
+        // + cart + address + stock reservation batch + payment + order + order item sequence (twice on its first use)
+        // + order_item batch + outbox insert + emptying the cart (total update + item delete)
+        assertThat(counter.stopCounting()).isLessThanOrEqualTo(15);
+
+        assertThat(productRepository.findById(extraProductId).orElseThrow().getQuantity()).isEqualTo(98);
+        // the cart is emptied by the checkout itself
+        assertThat(cartItemRepository.findAll()).noneMatch(item -> item.getProduct().getId().equals(extraProductId));
+    }
+
+    // every statement goes through the pool, hibernate's as well as JdbcTemplate's
+    @TestConfiguration
+    static class StatementCounting {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource target && !(bean instanceof StatementCountingDataSource)
+                            ? new StatementCountingDataSource(target)
+                            : bean;
+                }
+            };
+        }
+    }
+
+    private Long productIdNotInCart() {
+        ProductDTO productDTO = new ProductDTO();
+        productDTO.setName("Fetch plan extra " + sequence.incrementAndGet());
+        productDTO.setDescription("Product used to count statements");
+        productDTO.setQuantity(100);
+        productDTO.setPrice(5.0);
+        return productService.addProduct(categoryId, productDTO).getId();
+    }
+
+    private User newUser(String username) {
+        return userRepository.save(new User(username, username + "@example.com", "password"));
+    }
+
+    private void authenticateAs(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user.getUsername(), null, List.of()));
+    }
+}
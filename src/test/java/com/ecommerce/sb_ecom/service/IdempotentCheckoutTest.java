@@ -0,0 +1,169 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.exception.APIException;
+import com.ecommerce.sb_ecom.exception.ConflictException;
+import com.ecommerce.sb_ecom.model.Address;
+import com.ecommerce.sb_ecom.model.User;
+import com.ecommerce.sb_ecom.payload.CategoryDTO;
+import com.ecommerce.sb_ecom.payload.OrderDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.repository.AddressRepository;
+import com.ecommerce.sb_ecom.repository.IdempotencyRecordRepository;
+import com.ecommerce.sb_ecom.repository.OrderRepository;
+import com.ecommerce.sb_ecom.repository.ProductRepository;
+import com.ecommerce.sb_ecom.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// a client retrying the checkout with the same Idempotency-Key must end up with exactly one order
+@SpringBootTest
+@ActiveProfiles("h2")
+class IdempotentCheckoutTest {
+
+    private static final int RETRIES = 8;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void concurrentRetriesPlaceOneOrder() throws Exception {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "Retry check")).getId();
+        ProductDTO productDTO = new ProductDTO();
+        productDTO.setName("Retry check kettle");
+        productDTO.setDescription("Bought by an impatient client");
+        productDTO.setQuantity(10);
+        productDTO.setPrice(30.0);
+        Long productId = productService.addProduct(categoryId, productDTO).getId();
+
+        User buyer = userRepository.save(new User("retrier", "retrier@example.com", "password"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(buyer.getUsername(), null, List.of()));
+        cartService.addProductToCart(productId, 2);
+        SecurityContextHolder.clearContext();
+        Long addressId = addressRepository.save(
+                new Address(null, "Retry street", "Building 7", "Pune", "MH", "India", "411001", buyer)).getId();
+        String email = buyer.getEmail();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(RETRIES);
+        List<Future<OrderDTO>> futures = new ArrayList<>();
+        for (int i = 0; i < RETRIES; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return placeOrder(email, addressId, "card");
+            }));
+        }
+        start.countDown();
+        List<Long> orderIds = new ArrayList<>();
+        for (Future<OrderDTO> future : futures) {
+            orderIds.add(future.get(60, TimeUnit.SECONDS).getId());
+        }
+        executor.shutdown();
+
+        assertThat(orderIds).containsOnly(orderIds.get(0));
+        assertThat(orderRepository.findAll()).filteredOn(order -> order.getEmail().equals(email)).hasSize(1);
+        assertThat(productRepository.findById(productId).orElseThrow().getQuantity()).isEqualTo(8);
+
+        // a later retry gets the stored order, the same key for another request is refused
+        assertThat(placeOrder(email, addressId, "card").getId()).isEqualTo(orderIds.get(0));
+        assertThatThrownBy(() -> placeOrder(email, addressId, "upi"))
+                .isInstanceOf(APIException.class);
+    }
+
+    @Test
+    void attemptWhoseClaimWasTakenOverRollsBack() {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "Takeover check")).getId();
+        ProductDTO productDTO = new ProductDTO();
+        productDTO.setName("Takeover check toaster");
+        productDTO.setDescription("Bought by a slow client");
+        productDTO.setQuantity(10);
+        productDTO.setPrice(20.0);
+        Long productId = productService.addProduct(categoryId, productDTO).getId();
+
+        User buyer = userRepository.save(new User("slowpoke", "slowpoke@example.com", "password"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(buyer.getUsername(), null, List.of()));
+        cartService.addProductToCart(productId, 1);
+        SecurityContextHolder.clearContext();
+        Long addressId = addressRepository.save(
+                new Address(null, "Slow street", "Building 9", "Pune", "MH", "India", "411001", buyer)).getId();
+        String email = buyer.getEmail();
+
+        TransactionTemplate otherAttempt = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        otherAttempt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        assertThatThrownBy(() -> idempotencyStore.execute(email, "checkout-2", "card|" + addressId, OrderDTO.class, () -> {
+            OrderDTO order = orderService.placeOrder(email, addressId, "card");
+            // the lease runs out while this attempt is still busy, and another attempt takes the key over
+            Instant later = Instant.now().plus(Duration.ofDays(1));
+            Integer takenOver = otherAttempt.execute(status -> idempotencyRecordRepository.takeOverStaleClaim(
+                    email + "|checkout-2", "another attempt", later, later));
+            assertThat(takenOver).isEqualTo(1);
+            return order;
+        })).isInstanceOf(ConflictException.class);
+
+        assertThat(orderRepository.findAll()).noneMatch(order -> order.getEmail().equals(email));
+        assertThat(productRepository.findById(productId).orElseThrow().getQuantity()).isEqualTo(10);
+        assertThat(idempotencyRecordRepository.findById(email + "|checkout-2").orElseThrow().getOwner())
+                .isEqualTo("another attempt");
+    }
+
+    private OrderDTO placeOrder(String email, Long addressId, String paymentMethod) {
+        return idempotencyStore.execute(email, "checkout-1", paymentMethod + "|" + addressId, OrderDTO.class,
+                () -> orderService.placeOrder(email, addressId, paymentMethod));
+    }
+}
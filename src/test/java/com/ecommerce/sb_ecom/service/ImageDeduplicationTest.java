@@ -0,0 +1,102 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.repository.ImageBlobRepository;
+import com.ecommerce.sb_ecom.util.ImageFiles;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the same content is stored once, and removed once nothing references it anymore
+@SpringBootTest
+@ActiveProfiles("h2")
+class ImageDeduplicationTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private ImageGarbageCollector imageGarbageCollector;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${project.image}")
+    private String path;
+
+    private final List<String> stored = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (String name : stored) {
+            Files.deleteIfExists(ImageFiles.resolve(path, name));
+        }
+    }
+
+    @Test
+    void duplicateUploadWritesNothingAndUnreferencedImagesAreCollected() throws Exception {
+        byte[] red = png(0xFF0000);
+        String first = upload(red);
+        assertThat(ImageFiles.resolve(path, first)).exists();
+        assertThat(ImageFiles.resolve(path, first).getParent().getParent().getFileName().toString())
+                .isEqualTo(first.substring(0, 2));
+
+        double deduplicated = meterRegistry.counter("image.uploads.deduplicated").count();
+        assertThat(upload(red)).isEqualTo(first);
+        assertThat(meterRegistry.counter("image.uploads.deduplicated").count()).isEqualTo(deduplicated + 1);
+
+        String second = upload(png(0x0000FF));
+        assertThat(second).isNotEqualTo(first);
+
+        // a product shows the first image, then changes to the second one
+        transactionTemplate.executeWithoutResult(status -> fileService.addReference(first));
+        transactionTemplate.executeWithoutResult(status -> {
+            fileService.addReference(second);
+            fileService.removeReferences(List.of(first));
+        });
+        assertThat(imageBlobRepository.findById(first).orElseThrow().getRefCount()).isZero();
+        assertThat(imageBlobRepository.findById(second).orElseThrow().getRefCount()).isEqualTo(1);
+
+        // idle for longer than any grace period
+        imageGarbageCollector.collectIdleBefore(Instant.now().plusSeconds(60));
+        assertThat(imageBlobRepository.existsById(first)).isFalse();
+        assertThat(ImageFiles.resolve(path, first)).doesNotExist();
+        assertThat(imageBlobRepository.existsById(second)).isTrue();
+        assertThat(ImageFiles.resolve(path, second)).exists();
+    }
+
+    private String upload(byte[] content) throws Exception {
+        String name = fileService.uploadImage(path, new MockMultipartFile("image", "photo.png", "image/png", content));
+        stored.add(name);
+        return name;
+    }
+
+    private static byte[] png(int rgb) throws Exception {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, rgb);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
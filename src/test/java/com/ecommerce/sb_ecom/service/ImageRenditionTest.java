@@ -0,0 +1,77 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.exception.APIException;
+import com.ecommerce.sb_ecom.util.ImageFiles;
+import com.ecommerce.sb_ecom.util.ImageRenditions;
+import com.ecommerce.sb_ecom.util.ImageRenditions.Rendition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// uploads are typed by their content, and get thumbnail and medium renditions in the background
+@SpringBootTest
+@ActiveProfiles("h2")
+class ImageRenditionTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private ImageRenditionWorker imageRenditionWorker;
+
+    @Value("${project.image}")
+    private String path;
+
+    private final List<Path> written = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Path file : written) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void uploadGetsScaledRenditions() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1600, 800, BufferedImage.TYPE_INT_ARGB), "png", png);
+        // the client's name and content type are not trusted
+        String fileName = fileService.uploadImage(path,
+                new MockMultipartFile("image", "photo.jpeg", "image/jpeg", png.toByteArray()));
+        written.add(ImageFiles.resolve(path, fileName));
+        assertThat(fileName).endsWith(".png");
+
+        imageRenditionWorker.submit(fileName).get(30, TimeUnit.SECONDS);
+        for (Rendition rendition : Rendition.values()) {
+            Path file = ImageFiles.resolve(path, ImageRenditions.fileName(fileName, rendition));
+            written.add(file);
+            BufferedImage image = ImageIO.read(file.toFile());
+            assertThat(image.getWidth()).isEqualTo(rendition.maxSize());
+            assertThat(image.getHeight()).isEqualTo(rendition.maxSize() / 2);
+        }
+    }
+
+    @Test
+    void nonImageIsRefused() {
+        assertThatThrownBy(() -> fileService.uploadImage(path, new MockMultipartFile("image", "photo.png", "image/png",
+                "<html>not an image</html>".getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(APIException.class);
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecommerce.sb_ecom.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// uploaded images: name as strong ETag, long-lived caching, 304 on revalidation and byte ranges
+@SpringBootTest
+@ActiveProfiles("h2")
+class ImageServingTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @Autowired
+    private ImageService imageService;
+
+    @Value("${project.image}")
+    private String path;
+
+    private String fileName;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String id = UUID.randomUUID().toString();
+        fileName = id + ".png";
+        Files.createDirectories(Paths.get(path));
+        file = Files.writeString(Paths.get(path).resolve(fileName), CONTENT, StandardCharsets.US_ASCII);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void servesCachesAndRanges() throws Exception {
+        MockHttpServletResponse full = serve(new MockHttpServletRequest("GET", "/images/" + fileName));
+        assertThat(full.getStatus()).isEqualTo(200);
+        assertThat(full.getContentAsString()).isEqualTo(CONTENT);
+        assertThat(full.getContentType()).isEqualTo("image/png");
+        String etag = full.getHeader("ETag");
+        assertThat(etag).isEqualTo("\"" + fileName.substring(0, fileName.indexOf('.')) + "\"");
+        assertThat(full.getHeader("Cache-Control")).contains("immutable");
+
+        MockHttpServletRequest revalidation = new MockHttpServletRequest("GET", "/images/" + fileName);
+        revalidation.addHeader("If-None-Match", etag);
+        MockHttpServletResponse notModified = serve(revalidation);
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        assertThat(notModified.getContentAsByteArray()).isEmpty();
+
+        MockHttpServletRequest ranged = new MockHttpServletRequest("GET", "/images/" + fileName);
+        ranged.addHeader("Range", "bytes=5-9");
+        MockHttpServletResponse partial = serve(ranged);
+        assertThat(partial.getStatus()).isEqualTo(206);
+        assertThat(partial.getHeader("Content-Range")).isEqualTo("bytes 5-9/" + CONTENT.length());
+        assertThat(partial.getContentAsString()).isEqualTo("56789");
+
+        MockHttpServletRequest beyond = new MockHttpServletRequest("GET", "/images/" + fileName);
+        beyond.addHeader("Range", "bytes=100-");
+        assertThat(serve(beyond).getStatus()).isEqualTo(416);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        imageService.serveImage(fileName, request, response);
+        return response;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.Address;
+import com.ecommerce.sb_ecom.model.User;
+import com.ecommerce.sb_ecom.payload.CategoryDTO;
+import com.ecommerce.sb_ecom.payload.OrderDTO;
+import com.ecommerce.sb_ecom.payload.OrderResponse;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.repository.AddressRepository;
+import com.ecommerce.sb_ecom.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// order history pages: newest first, complete across cursors, and two selects per page whatever its size
+@SpringBootTest
+@ActiveProfiles("h2")
+class OrderHistoryTest {
+
+    private static final int ORDERS = 3;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OutboxPoller outboxPoller;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void userHistoryIsPagedNewestFirst() {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "History check")).getId();
+        User user = userRepository.save(new User("historian", "historian@example.com", "password"));
+        Long addressId = addressRepository.save(
+                new Address(null, "History street", "Building 3", "Pune", "MH", "India", "411001", user)).getId();
+
+        List<Long> placedOrderIds = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            ProductDTO productDTO = new ProductDTO();
+            productDTO.setName("History check book " + i);
+            productDTO.setDescription("Ordered to build a history");
+            productDTO.setQuantity(10);
+            productDTO.setPrice(15.0 + i);
+            Long productId = productService.addProduct(categoryId, productDTO).getId();
+
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(user.getUsername(), null, List.of()));
+            cartService.addProductToCart(productId, 1);
+            placedOrderIds.add(orderService.placeOrder(user.getEmail(), addressId, "card").getId());
+        }
+        // the outbox stage confirms them
+        outboxPoller.poll();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        OrderResponse firstPage = orderService.getUserOrders(user.getEmail(), null, 2);
+        // orders with payment and address + the items of the page
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(firstPage.isLastPage()).isFalse();
+        assertThat(firstPage.getContent()).extracting(OrderDTO::getId)
+                .containsExactly(placedOrderIds.get(2), placedOrderIds.get(1));
+        assertThat(firstPage.getContent()).allSatisfy(order -> {
+            assertThat(order.getOrderItems()).hasSize(1);
+            assertThat(order.getPayment().getPaymentMethod()).isEqualTo("card");
+            assertThat(order.getAddress().getId()).isEqualTo(addressId);
+        });
+
+        OrderResponse secondPage = orderService.getUserOrders(user.getEmail(), firstPage.getNextCursor(), 2);
+        assertThat(secondPage.isLastPage()).isTrue();
+        assertThat(secondPage.getContent()).extracting(OrderDTO::getId).containsExactly(placedOrderIds.get(0));
+
+        LocalDate today = LocalDate.now();
+        assertThat(orderService.searchOrders(today, today, "Order Confirmed", null, 1000).getContent())
+                .extracting(OrderDTO::getId).containsAll(placedOrderIds);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.OutboxEvent;
+import com.ecommerce.sb_ecom.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// an event given up is marked FAILED even when the handler's failure hook fails inside a repository call
+// (which marks the surrounding transaction rollback-only)
+@SpringBootTest
+@ActiveProfiles("h2")
+class OutboxPollerTest {
+
+    private static final String EVENT_TYPE = "test.failing";
+    private static final AtomicInteger failedCalls = new AtomicInteger();
+
+    @Autowired
+    private OutboxPoller outboxPoller;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Value("${project.outbox.maxAttempts}")
+    private int maxAttempts;
+
+    @Test
+    void lastAttemptMarksTheEventFailedWhateverItsHookDoes() {
+        Instant now = Instant.now();
+        Long eventId = outboxEventRepository.save(new OutboxEvent(null, EVENT_TYPE, "{}", OutboxEvent.PENDING,
+                maxAttempts - 1, null, now, now, null)).getId();
+
+        outboxPoller.poll();
+
+        OutboxEvent event = outboxEventRepository.findById(eventId).orElseThrow();
+        assertThat(event.getStatus()).isEqualTo(OutboxEvent.FAILED);
+        assertThat(event.getAttempts()).isEqualTo(maxAttempts);
+        assertThat(failedCalls.get()).isEqualTo(1);
+    }
+
+    @TestConfiguration
+    static class FailingHandler {
+
+        @Bean
+        OutboxEventHandler failingHandler(OutboxEventRepository outboxEventRepository) {
+            return new OutboxEventHandler() {
+                @Override
+                public String eventType() {
+                    return EVENT_TYPE;
+                }
+
+                @Override
+                public void handle(String payload) {
+                    throw new IllegalStateException("handling always fails");
+                }
+
+                @Override
+                public void failed(String payload) {
+                    failedCalls.incrementAndGet();
+                    // throws inside the transactional repository
+                    outboxEventRepository.findById(null);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ecommerce.sb_ecom.service;
+
+import com.ecommerce.sb_ecom.model.User;
+import com.ecommerce.sb_ecom.payload.CartDTO;
+import com.ecommerce.sb_ecom.payload.CategoryDTO;
+import com.ecommerce.sb_ecom.payload.PriceUpdateJobDTO;
+import com.ecommerce.sb_ecom.payload.ProductDTO;
+import com.ecommerce.sb_ecom.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// two price changes of a product back to back: whichever of their jobs runs last, the carts end up at the latest price
+@SpringBootTest
+@ActiveProfiles("h2")
+class PriceUpdateJobTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private PriceUpdateJobService priceUpdateJobService;
+
+    @Autowired
+    private PriceUpdateWorker priceUpdateWorker;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void cartsEndUpAtTheLatestPrice() throws Exception {
+        Long categoryId = categoryService.createCategory(new CategoryDTO(null, "Reprice check")).getId();
+        ProductDTO lamp = new ProductDTO();
+        lamp.setName("Reprice check lamp");
+        lamp.setDescription("Product used to check the price update jobs");
+        lamp.setQuantity(100);
+        lamp.setPrice(10.0);
+        lamp = productService.addProduct(categoryId, lamp);
+
+        User user = userRepository.save(new User("repricer", "repricer@example.com", "password"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user.getUsername(), null, List.of()));
+        CartDTO cart = cartService.addProductToCart(lamp.getId(), 2);
+        cartStore.flushAll();
+
+        lamp.setPrice(20.0);
+        PriceUpdateJobDTO first = productService.updateProduct(lamp.getId(), lamp).getPriceUpdateJob();
+        lamp.setPrice(30.0);
+        PriceUpdateJobDTO second = productService.updateProduct(lamp.getId(), lamp).getPriceUpdateJob();
+        awaitDone(first.getJobId());
+        awaitDone(second.getJobId());
+
+        // the job of the first change once more, as if it had been the last one to commit
+        PriceUpdateJobDTO stale = new PriceUpdateJobDTO("stale", lamp.getId(), 20.0, "QUEUED", 0, 0, Instant.now(), null, null);
+        priceUpdateWorker.reprice(stale);
+        awaitDone(stale);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT price_cents FROM cart_item WHERE cart_id = ?", Long.class, cart.getId()))
+                .isEqualTo(3000);
+        assertThat(jdbcTemplate.queryForObject("SELECT total_price_cents FROM cart WHERE cart_id = ?", Long.class, cart.getId()))
+                .isEqualTo(6000);
+        CartDTO inMemory = cartService.getCart(user.getEmail(), cart.getId());
+        assertThat(inMemory.getTotal()).isEqualTo(60.0);
+        assertThat(inMemory.getProducts()).extracting(ProductDTO::getPrice).containsExactly(30.0);
+    }
+
+    private void awaitDone(String jobId) throws InterruptedException {
+        for (int i = 0; i < 200 && !priceUpdateJobService.getJob(jobId).getStatus().equals("DONE"); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(priceUpdateJobService.getJob(jobId).getStatus()).isEqualTo("DONE");
+    }
+
+    private static void awaitDone(PriceUpdateJobDTO job) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            synchronized (job) {
+                if (job.getStatus().equals("DONE")) {
+                    return;
+                }
+            }
+            Thread.sleep(50);
+        }
+        synchronized (job) {
+            assertThat(job.getStatus()).isEqualTo("DONE");
+        }
+    }
+}
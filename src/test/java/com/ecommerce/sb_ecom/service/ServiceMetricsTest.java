@@ -0,0 +1,41 @@
+package com.ecommerce.sb_ecom.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// a request leaves a service timer and its hibernate statement count behind
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class ServiceMetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @WithMockUser
+    void requestIsTimedAndItsStatementsCounted() throws Exception {
+        mockMvc.perform(get("/api/public/categories").param("pageSize", "5"));
+
+        assertThat(meterRegistry.find("app.service").tag("method", "getAllCategories").timer())
+                .isNotNull()
+                .satisfies(timer -> assertThat(timer.count()).isPositive());
+        DistributionSummary statements = meterRegistry.find("hibernate.statements.per.request")
+                .tag("uri", "/api/public/categories").summary();
+        assertThat(statements).isNotNull();
+        assertThat(statements.count()).isPositive();
+    }
+}
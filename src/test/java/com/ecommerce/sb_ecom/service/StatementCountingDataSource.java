@@ -0,0 +1,79 @@
+package com.ecommerce.sb_ecom.service;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// counts the statements executed on the thread that started counting, whoever runs them (hibernate, JdbcTemplate):
+// every execute* call is one round trip, a batch counts once
+class StatementCountingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final AtomicInteger executed = new AtomicInteger();
+    private volatile Thread countedThread;
+
+    StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    void startCounting() {
+        executed.set(0);
+        countedThread = Thread.currentThread();
+    }
+
+    int stopCounting() {
+        countedThread = null;
+        return executed.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement && method.getName().matches("createStatement|prepareStatement|prepareCall")) {
+                        return counting(statement, method.getReturnType());
+                    }
+                    return result;
+                });
+    }
+
+    private Object counting(Statement statement, Class<?> type) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute") && Thread.currentThread() == countedThread) {
+                executed.incrementAndGet();
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}